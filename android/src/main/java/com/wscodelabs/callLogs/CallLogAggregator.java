@@ -0,0 +1,249 @@
+package com.wscodelabs.callLogs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Accumulates call statistics in a single pass over the cursor. Only the summary is sent
+ * to JS, so the payload size depends on the number of groups, not on the number of calls.
+ */
+final class CallLogAggregator {
+
+    static final long HOUR_MILLIS = 60 * 60 * 1000;
+    static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    static final class Spec {
+        final boolean byType;
+        final boolean byNumber;
+        // Number of entries returned in byNumber, or -1 for all of them.
+        final int topNumbers;
+        // Histogram bucket width in local time, or 0 for no histogram.
+        final long bucketMillis;
+
+        private Spec(boolean byType, boolean byNumber, int topNumbers, long bucketMillis) {
+            this.byType = byType;
+            this.byNumber = byNumber;
+            this.topNumbers = topNumbers;
+            this.bucketMillis = bucketMillis;
+        }
+
+        static Spec from(@Nullable ReadableMap spec) {
+            if (spec == null) {
+                return new Spec(true, false, -1, 0);
+            }
+
+            boolean byType = !spec.hasKey("byType") || spec.getBoolean("byType");
+            boolean byNumber = spec.hasKey("byNumber") && spec.getBoolean("byNumber");
+            int topNumbers = spec.hasKey("topNumbers") && !spec.isNull("topNumbers") ? spec.getInt("topNumbers") : -1;
+
+            long bucketMillis = 0;
+            String histogram = CallLogFilter.optString(spec, "histogram");
+            if ("hour".equals(histogram)) {
+                bucketMillis = HOUR_MILLIS;
+            } else if ("day".equals(histogram)) {
+                bucketMillis = DAY_MILLIS;
+            } else if (histogram != null) {
+                throw new IllegalArgumentException("Unsupported histogram bucket: " + histogram);
+            }
+
+            return new Spec(byType, byNumber || topNumbers >= 0, topNumbers, bucketMillis);
+        }
+
+        String key() {
+            return byType + "|" + byNumber + "|" + topNumbers + "|" + bucketMillis;
+        }
+    }
+
+    private final Spec spec;
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    private long totalCount;
+    private long totalDuration;
+
+    // Indexed by provider type code; codes outside the known range are counted under 0.
+    private final long[] typeCounts = new long[CallType.KNOWN_CODES.length + 1];
+    private final long[] typeDurations = new long[CallType.KNOWN_CODES.length + 1];
+
+    // Totals per number, grouped by CallLogNumbers.matchKey so differently formatted
+    // numbers add up to one entry.
+    private final Map<String, List<NumberTotals>> numbers = new HashMap<>();
+
+    private static final class NumberTotals {
+        // The most recent spelling of the number, which is the one reported.
+        final String number;
+        String digits;
+        long count;
+        long duration;
+
+        NumberTotals(String number, String digits) {
+            this.number = number;
+            this.digits = digits;
+        }
+    }
+
+    private final Calendar calendar;
+
+    // Rows arrive newest first, so buckets are appended in order without a lookup.
+    private long[] bucketStarts = new long[16];
+    private long[] bucketCounts = new long[16];
+    private long[] bucketDurations = new long[16];
+    private int bucketCount;
+
+    CallLogAggregator(Spec spec) {
+        this.spec = spec;
+        this.calendar = Calendar.getInstance(timeZone);
+    }
+
+    void add(int type, long date, long duration, @Nullable String number, @Nullable String normalizedNumber) {
+        totalCount++;
+        totalDuration += duration;
+
+        if (spec.byType) {
+            int slot = type > 0 && type < typeCounts.length ? type : 0;
+            typeCounts[slot]++;
+            typeDurations[slot] += duration;
+        }
+
+        if (spec.byNumber && number != null) {
+            NumberTotals totals = numberTotals(number, normalizedNumber);
+            totals.count++;
+            totals.duration += duration;
+        }
+
+        if (spec.bucketMillis > 0) {
+            addToBucket(bucketStart(date), duration);
+        }
+    }
+
+    WritableMap toMap() {
+        WritableMap result = Arguments.createMap();
+        result.putDouble("count", totalCount);
+        result.putDouble("duration", totalDuration);
+
+        if (spec.byType) {
+            WritableMap byType = Arguments.createMap();
+            for (int code = 0; code < typeCounts.length; code++) {
+                if (typeCounts[code] > 0) {
+                    byType.putMap(CallType.resolve(code), totals(typeCounts[code], typeDurations[code]));
+                }
+            }
+            result.putMap("byType", byType);
+        }
+
+        if (spec.byNumber) {
+            List<NumberTotals> entries = new ArrayList<>();
+            for (List<NumberTotals> group : numbers.values()) {
+                entries.addAll(group);
+            }
+            Collections.sort(entries, new Comparator<NumberTotals>() {
+                @Override
+                public int compare(NumberTotals a, NumberTotals b) {
+                    int byCount = compareLongs(b.count, a.count);
+                    return byCount != 0 ? byCount : compareLongs(b.duration, a.duration);
+                }
+            });
+
+            int size = spec.topNumbers < 0 ? entries.size() : Math.min(spec.topNumbers, entries.size());
+            WritableArray byNumber = Arguments.createArray();
+            for (int i = 0; i < size; i++) {
+                NumberTotals entry = entries.get(i);
+                WritableMap totals = totals(entry.count, entry.duration);
+                totals.putString("phoneNumber", entry.number);
+                byNumber.pushMap(totals);
+            }
+            result.putArray("byNumber", byNumber);
+        }
+
+        if (spec.bucketMillis > 0) {
+            WritableArray histogram = Arguments.createArray();
+            for (int i = 0; i < bucketCount; i++) {
+                WritableMap bucket = totals(bucketCounts[i], bucketDurations[i]);
+                bucket.putDouble("start", bucketStarts[i]);
+                histogram.pushMap(bucket);
+            }
+            result.putArray("histogram", histogram);
+        }
+
+        return result;
+    }
+
+    private void addToBucket(long start, long duration) {
+        int last = bucketCount - 1;
+        if (last < 0 || bucketStarts[last] != start) {
+            if (bucketCount == bucketStarts.length) {
+                int capacity = bucketCount * 2;
+                bucketStarts = Arrays.copyOf(bucketStarts, capacity);
+                bucketCounts = Arrays.copyOf(bucketCounts, capacity);
+                bucketDurations = Arrays.copyOf(bucketDurations, capacity);
+            }
+            last = bucketCount++;
+            bucketStarts[last] = start;
+        }
+        bucketCounts[last]++;
+        bucketDurations[last] += duration;
+    }
+
+    private NumberTotals numberTotals(String number, @Nullable String normalizedNumber) {
+        String digits = CallLogNumbers.digits(normalizedNumber != null ? normalizedNumber : number);
+        String key = CallLogNumbers.matchKey(digits);
+        List<NumberTotals> group = numbers.get(key);
+        if (group == null) {
+            group = new ArrayList<>(1);
+            numbers.put(key, group);
+        }
+
+        for (NumberTotals totals : group) {
+            if (digits.isEmpty() ? totals.number.equals(number) : CallLogNumbers.sameNumber(totals.digits, digits)) {
+                // Keep the longest form so a country code seen later still matches.
+                if (digits.length() > totals.digits.length()) {
+                    totals.digits = digits;
+                }
+                return totals;
+            }
+        }
+
+        NumberTotals totals = new NumberTotals(number, digits);
+        group.add(totals);
+        return totals;
+    }
+
+    /**
+     * Start of the local-time hour or day containing the given UTC timestamp. Truncating in
+     * the calendar keeps one start per local bucket on days when the UTC offset changes.
+     */
+    private long bucketStart(long date) {
+        calendar.setTimeInMillis(date);
+        if (spec.bucketMillis == DAY_MILLIS) {
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+        }
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static WritableMap totals(long count, long duration) {
+        WritableMap totals = Arguments.createMap();
+        totals.putDouble("count", count);
+        totals.putDouble("duration", duration);
+        return totals;
+    }
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Answers several filters from one scan planned by {@link CallLogQuery#planBatch}. Every
+ * row is checked against each sub-query that still needs rows; a sub-query stops collecting
+ * at its own limit and the scan ends once all of them are satisfied.
+ */
+final class CallLogBatch {
+
+    private static final class Entry {
+        final CallLogFilter filter;
+        final int limit;
+        final CallLogProjection projection;
+        @Nullable final CallLogNumbers phoneNumbers;
+
+        CallLogSink sink;
+        int count;
+        boolean done;
+
+        Entry(CallLogFilter filter, int limit, CallLogProjection projection) {
+            this.filter = filter;
+            this.limit = limit;
+            this.projection = projection;
+            this.phoneNumbers = filter.phoneNumbers.isEmpty() ? null : new CallLogNumbers(filter.phoneNumbers);
+            this.done = limit == 0;
+        }
+
+        boolean matches(Cursor cursor, int dateIndex, int typeIndex) {
+            long date = cursor.getLong(dateIndex);
+            if (filter.hasMinTimestamp() && date < filter.minTimestamp) {
+                return false;
+            }
+            if (filter.hasMaxTimestamp() && date > filter.maxTimestamp) {
+                return false;
+            }
+            if (!filter.types.isEmpty() && !filter.types.contains(CallType.resolve(cursor.getInt(typeIndex)))) {
+                return false;
+            }
+            return phoneNumbers == null || phoneNumbers.matches(cursor);
+        }
+
+        void offer(Cursor cursor) {
+            if (sink instanceof CallLogGroups) {
+                CallLogGroups groups = (CallLogGroups) sink;
+                if (!groups.continuesGroup(cursor) && limit >= 0 && groups.size() >= limit) {
+                    done = true;
+                    return;
+                }
+                groups.add(cursor);
+                return;
+            }
+
+            sink.add(cursor);
+            count++;
+            done = limit >= 0 && count >= limit;
+        }
+
+        Object result() {
+            if (sink != null) {
+                return sink.result();
+            }
+            return filter.columnar ? CallLogColumns.empty() : Arguments.createArray();
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int dateIndex;
+    private int typeIndex;
+    private int pending;
+
+    void add(CallLogFilter filter, int limit, CallLogProjection projection) {
+        Entry entry = new Entry(filter, limit, projection);
+        entries.add(entry);
+        if (!entry.done) {
+            pending++;
+        }
+    }
+
+    /**
+     * The provider projection covering every sub-query, or null when one of them wants
+     * every column.
+     */
+    @Nullable
+    String[] columns() {
+        Set<String> columns = new LinkedHashSet<>();
+        for (Entry entry : entries) {
+            List<String> required = new ArrayList<>(Arrays.asList(Calls.DATE, Calls.TYPE));
+            if (entry.phoneNumbers != null) {
+                required.addAll(Arrays.asList(CallLogNumbers.columns()));
+            }
+            if (entry.filter.groupConsecutive) {
+                required.addAll(Arrays.asList(CallLogGroups.COLUMNS));
+            }
+
+            String[] entryColumns = entry.projection.columns(required.toArray(new String[0]));
+            if (entryColumns == null) {
+                return null;
+            }
+            columns.addAll(Arrays.asList(entryColumns));
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    void bind(Cursor cursor) {
+        dateIndex = cursor.getColumnIndex(Calls.DATE);
+        typeIndex = cursor.getColumnIndex(Calls.TYPE);
+        for (Entry entry : entries) {
+            entry.projection.bind(cursor);
+            if (entry.phoneNumbers != null) {
+                entry.phoneNumbers.bind(cursor);
+            }
+            if (entry.filter.groupConsecutive) {
+                CallLogGroups groups = new CallLogGroups(entry.projection);
+                groups.bind(cursor);
+                entry.sink = groups;
+            } else if (entry.filter.columnar) {
+                entry.sink = new CallLogColumns(entry.projection);
+            } else {
+                entry.sink = new CallLogRows(entry.projection);
+            }
+        }
+    }
+
+    /**
+     * Hands the cursor's row to every sub-query it matches.
+     */
+    void offer(Cursor cursor, CallLogTrace trace) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.done || !entry.matches(cursor, dateIndex, typeIndex)) {
+                continue;
+            }
+            long decodeStarted = trace.now();
+            entry.offer(cursor);
+            trace.decoded(decodeStarted);
+            if (entry.done) {
+                pending--;
+            }
+        }
+    }
+
+    /**
+     * Rows collected so far over all sub-queries; groups count once.
+     */
+    int rowsReturned() {
+        int rows = 0;
+        for (Entry entry : entries) {
+            rows += entry.sink instanceof CallLogGroups ? ((CallLogGroups) entry.sink).size() : entry.count;
+        }
+        return rows;
+    }
+
+    boolean isSatisfied() {
+        return pending == 0;
+    }
+
+    /**
+     * One result per sub-query, in the order they were added.
+     */
+    WritableArray result() {
+        WritableArray results = Arguments.createArray();
+        for (Entry entry : entries) {
+            Object result = entry.result();
+            if (result instanceof WritableArray) {
+                results.pushArray((WritableArray) result);
+            } else {
+                results.pushMap((WritableMap) result);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,190 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CallLog.Calls;
+import android.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Results of earlier loads keyed by normalized filter and limit, bounded by an estimate of
+ * their size in bytes. Any change to the call log clears the cache. Bridge values can only
+ * be sent once, so caching a result costs a deep copy and keeps the result in memory; a key
+ * is therefore only admitted the second time it misses, and one-off queries are never
+ * copied. The price is that the first repeat of a query still scans the provider; hits
+ * start with the third call.
+ */
+final class CallLogCache {
+
+    private static final int MAX_BYTES = 4 * 1024 * 1024;
+    // Keys that missed once and are admitted on their next miss.
+    private static final int MAX_CANDIDATES = 64;
+
+    // Prefix of keys whose results hold contact details; see invalidateContacts().
+    static final String CONTACTS_PREFIX = "contacts|";
+
+    private final ContentResolver resolver;
+    private final ContentObserver observer;
+    private final LruCache<String, Entry> entries;
+    private final LruCache<String, Boolean> candidates = new LruCache<>(MAX_CANDIDATES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Bumped on every change so results of scans that raced a change are not cached. Only
+    // written under the lock that put() checks it with.
+    private volatile long generation;
+    private boolean invalidating;
+    private boolean observing;
+
+    private static final class Entry {
+        final Object result;
+        final int bytes;
+
+        Entry(Object result, int bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    CallLogCache(ContentResolver resolver) {
+        this.resolver = resolver;
+        this.observer = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                invalidate();
+            }
+        };
+        this.entries = new LruCache<String, Entry>(MAX_BYTES) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.bytes;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Entry oldValue, Entry newValue) {
+                if (evicted && !invalidating) {
+                    evictions.incrementAndGet();
+                }
+            }
+        };
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * Returns the cached result, or null on a miss. The result must be copied with
+     * {@link CallLogExecutor#copy(Object)} before it is handed to the bridge; the copy walks
+     * the whole result, so do it off the native modules thread.
+     */
+    @Nullable
+    Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.result;
+    }
+
+    /**
+     * Caches the result of a scan started at the given generation if the key missed before,
+     * and returns the value to hand to the bridge: a copy when the result was cached, the
+     * result itself otherwise. The size is estimated from the number of rows and keys per row.
+     */
+    Object put(String key, Object result, long startedAt, int rows, int keysPerRow) {
+        synchronized (this) {
+            if (!observing) {
+                resolver.registerContentObserver(Calls.CONTENT_URI, true, observer);
+                observing = true;
+            }
+
+            // Checked and stored under the lock invalidate() holds, so a change can no longer
+            // slip in between and leave a stale result cached.
+            if (startedAt != generation) {
+                return result;
+            }
+            if (candidates.get(key) == null) {
+                candidates.put(key, Boolean.TRUE);
+                return result;
+            }
+            candidates.remove(key);
+
+            long bytes = estimateBytes(rows, keysPerRow);
+            if (bytes > MAX_BYTES) {
+                return result;
+            }
+            entries.put(key, new Entry(result, (int) bytes));
+        }
+        return CallLogExecutor.copy(result);
+    }
+
+    synchronized void invalidate() {
+        generation++;
+        invalidations.incrementAndGet();
+        invalidating = true;
+        try {
+            entries.evictAll();
+        } finally {
+            invalidating = false;
+        }
+    }
+
+    /**
+     * Drops the results that hold contact details, leaving plain call logs cached.
+     */
+    synchronized void invalidateContacts() {
+        generation++;
+        invalidations.incrementAndGet();
+        invalidating = true;
+        try {
+            for (String key : entries.snapshot().keySet()) {
+                if (key.startsWith(CONTACTS_PREFIX)) {
+                    entries.remove(key);
+                }
+            }
+        } finally {
+            invalidating = false;
+        }
+    }
+
+    WritableMap stats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("hits", hits.get());
+        stats.putDouble("misses", misses.get());
+        stats.putDouble("evictions", evictions.get());
+        stats.putDouble("invalidations", invalidations.get());
+        stats.putInt("entries", entries.snapshot().size());
+        stats.putInt("bytes", entries.size());
+        stats.putInt("maxBytes", MAX_BYTES);
+        return stats;
+    }
+
+    synchronized void close() {
+        if (observing) {
+            resolver.unregisterContentObserver(observer);
+            observing = false;
+        }
+        entries.evictAll();
+    }
+
+    /**
+     * Rough heap size of a result with the given shape; only used to bound the cache.
+     */
+    private static long estimateBytes(int rows, int keysPerRow) {
+        return 64 + (long) rows * (48 + 64L * keysPerRow);
+    }
+}
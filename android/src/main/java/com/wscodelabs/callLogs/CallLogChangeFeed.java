@@ -0,0 +1,340 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CallLog.Calls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Watches the call log and reports what changed since the last sync. Bursts of provider
+ * notifications are debounced into one sync, which only decodes rows whose LAST_MODIFIED or
+ * _ID is past the watermark and that match the subscription's filter. The provider keeps no
+ * record of deleted rows, so when deletions are tracked the feed keeps the known ids and
+ * compares them against the _ID column, but only after the row count dropped.
+ * <p>
+ * The filter applies to inserted and updated rows only. Deleted rows can no longer be
+ * matched, so every deleted id is reported, and a row updated so that it no longer matches
+ * the filter is not reported at all.
+ */
+final class CallLogChangeFeed extends ContentObserver {
+
+    interface Listener {
+        void onChanges(WritableMap changes);
+
+        void onError(Exception e);
+    }
+
+    private static final long DEBOUNCE_MS = 500;
+
+    private final ContentResolver resolver;
+    private final CallLogExecutor executor;
+    private final CallLogFilter filter;
+    private final CallLogProjection projection;
+    private final CallLogNumberIndex numberIndex;
+    private final CallLogMetrics metrics;
+    private final boolean trackDeletions;
+    private final Listener listener;
+    private final Handler handler;
+
+    private final Runnable syncTask = new Runnable() {
+        @Override
+        public void run() {
+            sync();
+        }
+    };
+    private final Runnable scheduleSync = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                executor.execute(syncTask);
+            } catch (RejectedExecutionException e) {
+                listener.onError(e);
+            }
+        }
+    };
+
+    @Nullable private CallLogWatermark watermark;
+    // Sorted ids present after the last sync; only kept when deletions are tracked.
+    private long[] knownIds = new long[0];
+    // The trace of the running sync, which records every query the sync makes.
+    private CallLogTrace trace = CallLogTrace.DISABLED;
+    private volatile boolean stopped;
+
+    CallLogChangeFeed(ContentResolver resolver, CallLogExecutor executor, CallLogFilter filter,
+                      CallLogProjection projection, CallLogNumberIndex numberIndex, CallLogMetrics metrics,
+                      boolean trackDeletions, Listener listener) {
+        this(resolver, executor, filter, projection, numberIndex, metrics, trackDeletions, listener,
+                new Handler(Looper.getMainLooper()));
+    }
+
+    private CallLogChangeFeed(ContentResolver resolver, CallLogExecutor executor, CallLogFilter filter,
+                              CallLogProjection projection, CallLogNumberIndex numberIndex, CallLogMetrics metrics,
+                              boolean trackDeletions, Listener listener, Handler handler) {
+        super(handler);
+        this.resolver = resolver;
+        this.executor = executor;
+        this.filter = filter;
+        this.projection = projection;
+        this.numberIndex = numberIndex;
+        this.metrics = metrics;
+        this.trackDeletions = trackDeletions;
+        this.listener = listener;
+        this.handler = handler;
+    }
+
+    /**
+     * Starts watching. With a watermark, rows changed since then are reported right away;
+     * without one, the feed starts from the current state of the log.
+     */
+    void start(@Nullable final CallLogWatermark since) {
+        resolver.registerContentObserver(Calls.CONTENT_URI, true, this);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                initialize(since);
+            }
+        });
+    }
+
+    void stop() {
+        stopped = true;
+        resolver.unregisterContentObserver(this);
+        handler.removeCallbacks(scheduleSync);
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        handler.removeCallbacks(scheduleSync);
+        handler.postDelayed(scheduleSync, DEBOUNCE_MS);
+    }
+
+    private synchronized void initialize(@Nullable CallLogWatermark since) {
+        trace = metrics.start("subscribe", filter.key());
+        try {
+            if (trackDeletions) {
+                knownIds = readIds(null, null);
+            }
+            if (since != null) {
+                watermark = since;
+                syncLocked();
+            } else {
+                watermark = currentWatermark();
+            }
+        } catch (RuntimeException e) {
+            listener.onError(e);
+        } finally {
+            finishTrace();
+        }
+    }
+
+    private synchronized void sync() {
+        trace = metrics.start("subscribe", filter.key());
+        try {
+            syncLocked();
+        } catch (RuntimeException e) {
+            listener.onError(e);
+        } finally {
+            finishTrace();
+        }
+    }
+
+    private void finishTrace() {
+        metrics.record(trace);
+        trace = CallLogTrace.DISABLED;
+    }
+
+    private void syncLocked() {
+        if (stopped || watermark == null) {
+            return;
+        }
+
+        WritableArray inserted = Arguments.createArray();
+        WritableArray updated = Arguments.createArray();
+        CallLogWatermark next = readModified(inserted, updated);
+
+        WritableArray deleted = Arguments.createArray();
+        int deletedCount = trackDeletions ? readDeleted(deleted) : 0;
+
+        if (inserted.size() == 0 && updated.size() == 0 && deletedCount == 0) {
+            return;
+        }
+
+        watermark = next;
+
+        WritableMap changes = Arguments.createMap();
+        changes.putArray("inserted", inserted);
+        changes.putArray("updated", updated);
+        changes.putArray("deleted", deleted);
+        changes.putString("watermark", watermark.encode());
+        listener.onChanges(changes);
+    }
+
+    private CallLogWatermark readModified(WritableArray inserted, WritableArray updated) {
+        List<String> args = new ArrayList<>();
+        String selection;
+        if (hasLastModified()) {
+            selection = "(" + Calls.LAST_MODIFIED + " > ? OR " + Calls._ID + " > ?)";
+            args.add(Long.toString(watermark.lastModified));
+            args.add(Long.toString(watermark.maxId));
+        } else {
+            // Without LAST_MODIFIED only new rows can be detected.
+            selection = Calls._ID + " > ?";
+            args.add(Long.toString(watermark.maxId));
+        }
+
+        // Planned on every sync so phone numbers are matched against the current number index.
+        CallLogQuery query = hasLastModified()
+                ? CallLogQuery.plan(filter, projection, -1, numberIndex, Calls._ID, Calls.LAST_MODIFIED)
+                : CallLogQuery.plan(filter, projection, -1, numberIndex, Calls._ID);
+        if (query.selection != null) {
+            selection += " AND (" + query.selection + ")";
+            args.addAll(Arrays.asList(query.selectionArgs != null ? query.selectionArgs : new String[0]));
+        }
+
+        long queryStarted = trace.now();
+        Cursor cursor = resolver.query(Calls.CONTENT_URI, query.projection, selection,
+                args.toArray(new String[0]), Calls._ID + " ASC");
+        trace.queried(queryStarted);
+
+        CallLogWatermark next = watermark;
+        if (cursor == null) {
+            return next;
+        }
+
+        long started = trace.now();
+        int scannedCount = 0;
+        try {
+            projection.bind(cursor);
+            query.bind(cursor);
+            int idIndex = cursor.getColumnIndexOrThrow(Calls._ID);
+            int lastModifiedIndex = hasLastModified() ? cursor.getColumnIndexOrThrow(Calls.LAST_MODIFIED) : -1;
+
+            while (!stopped && cursor.moveToNext()) {
+                scannedCount++;
+                if (!query.matches(cursor)) {
+                    continue;
+                }
+                long id = cursor.getLong(idIndex);
+                long lastModified = lastModifiedIndex != -1 ? cursor.getLong(lastModifiedIndex) : 0;
+
+                long decodeStarted = trace.now();
+                WritableMap callLog = Arguments.createMap();
+                projection.write(cursor, callLog);
+                trace.decoded(decodeStarted);
+                if (id > watermark.maxId) {
+                    inserted.pushMap(callLog);
+                } else {
+                    updated.pushMap(callLog);
+                }
+                next = next.advance(lastModified, id);
+            }
+        } finally {
+            cursor.close();
+            trace.scanned(started, scannedCount, inserted.size() + updated.size());
+        }
+        return next;
+    }
+
+    private CallLogWatermark currentWatermark() {
+        CallLogWatermark current = CallLogWatermark.ORIGIN.advance(0, readMax(Calls._ID));
+        return hasLastModified() ? current.advance(readMax(Calls.LAST_MODIFIED), 0) : current;
+    }
+
+    private long readMax(String column) {
+        Cursor cursor = resolver.query(
+                Calls.CONTENT_URI.buildUpon().appendQueryParameter(Calls.LIMIT_PARAM_KEY, "1").build(),
+                new String[] { column }, null, null, column + " DESC");
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToNext() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Pushes the ids deleted since the last sync. New ids are appended to the known ids; the
+     * whole _ID column is only read when fewer rows than known ids are left.
+     */
+    private int readDeleted(WritableArray deleted) {
+        long lastKnownId = knownIds.length > 0 ? knownIds[knownIds.length - 1] : 0;
+        long[] added = readIds(Calls._ID + " > ?", new String[] { Long.toString(lastKnownId) });
+        if (added.length > 0) {
+            long[] ids = Arrays.copyOf(knownIds, knownIds.length + added.length);
+            System.arraycopy(added, 0, ids, knownIds.length, added.length);
+            knownIds = ids;
+        }
+
+        if (CallLogQuery.hasAtLeast(resolver, knownIds.length)) {
+            return 0;
+        }
+        long[] ids = readIds(null, null);
+        int count = diff(knownIds, ids, deleted);
+        knownIds = ids;
+        return count;
+    }
+
+    private long[] readIds(@Nullable String selection, @Nullable String[] selectionArgs) {
+        long queryStarted = trace.now();
+        Cursor cursor = resolver.query(Calls.CONTENT_URI, new String[] { Calls._ID }, selection, selectionArgs,
+                Calls._ID + " ASC");
+        trace.queried(queryStarted);
+        if (cursor == null) {
+            return new long[0];
+        }
+
+        long started = trace.now();
+        int count = 0;
+        try {
+            long[] ids = new long[cursor.getCount()];
+            while (cursor.moveToNext()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+                }
+                ids[count++] = cursor.getLong(0);
+            }
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        } finally {
+            cursor.close();
+            trace.scanned(started, count, 0);
+        }
+    }
+
+    /**
+     * Pushes every id in {@code before} that is missing from {@code after}; both are sorted.
+     */
+    private static int diff(long[] before, long[] after, WritableArray deleted) {
+        int count = 0;
+        int j = 0;
+        for (long id : before) {
+            while (j < after.length && after[j] < id) {
+                j++;
+            }
+            if (j == after.length || after[j] != id) {
+                deleted.pushDouble(id);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean hasLastModified() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+    }
+}
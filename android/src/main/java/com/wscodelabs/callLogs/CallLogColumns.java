@@ -0,0 +1,106 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Collects call logs as one array per key instead of one map per row, so each key crosses
+ * the bridge once. Repetitive string keys are dictionary-encoded: their column holds
+ * indices into a per-key array of distinct values.
+ */
+final class CallLogColumns implements CallLogSink {
+
+    static final String FORMAT = "columnar";
+
+    private final CallLogProjection projection;
+    private final WritableArray[] columns;
+    private final WritableArray[] dictionaries;
+    private final List<Map<String, Integer>> dictionaryCodes;
+    private int length;
+
+    CallLogColumns(CallLogProjection projection) {
+        this.projection = projection;
+
+        int size = projection.size();
+        columns = new WritableArray[size];
+        dictionaries = new WritableArray[size];
+        dictionaryCodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, Integer> codes = null;
+            if (projection.isBound(i)) {
+                columns[i] = Arguments.createArray();
+                if (projection.isDictionaryEncoded(i)) {
+                    dictionaries[i] = Arguments.createArray();
+                    codes = new HashMap<>();
+                }
+            }
+            dictionaryCodes.add(codes);
+        }
+    }
+
+    static WritableMap empty() {
+        WritableMap result = Arguments.createMap();
+        result.putString("format", FORMAT);
+        result.putInt("length", 0);
+        result.putMap("columns", Arguments.createMap());
+        result.putMap("dictionaries", Arguments.createMap());
+        return result;
+    }
+
+    @Override
+    public void add(Cursor cursor) {
+        projection.append(cursor, this);
+        length++;
+    }
+
+    WritableArray column(int key) {
+        return columns[key];
+    }
+
+    void pushEncoded(int key, @Nullable String value) {
+        if (value == null) {
+            columns[key].pushNull();
+            return;
+        }
+
+        Map<String, Integer> codes = dictionaryCodes.get(key);
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = codes.size();
+            codes.put(value, code);
+            dictionaries[key].pushString(value);
+        }
+        columns[key].pushInt(code);
+    }
+
+    @Override
+    public WritableMap result() {
+        WritableMap columnsMap = Arguments.createMap();
+        WritableMap dictionariesMap = Arguments.createMap();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                columnsMap.putArray(projection.key(i), columns[i]);
+            }
+            if (dictionaries[i] != null) {
+                dictionariesMap.putArray(projection.key(i), dictionaries[i]);
+            }
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putString("format", FORMAT);
+        result.putInt("length", length);
+        result.putMap("columns", columnsMap);
+        result.putMap("dictionaries", dictionariesMap);
+        return result;
+    }
+}
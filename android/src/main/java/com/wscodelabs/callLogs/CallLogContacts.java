@@ -0,0 +1,112 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.PhoneLookup;
+import android.util.LruCache;
+
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the contact behind a number with PhoneLookup, which is what the dialer shows
+ * instead of the often stale CACHED_NAME. Lookups are cached per number, including misses,
+ * so a number is looked up once no matter how many calls it has; any change to the contacts
+ * clears the cache.
+ */
+final class CallLogContacts {
+
+    private static final int MAX_ENTRIES = 512;
+
+    static final class Contact {
+        static final Contact NONE = new Contact(null, null, -1);
+
+        @Nullable final String displayName;
+        @Nullable final String photoUri;
+        // -1 when the number belongs to no contact.
+        final long contactId;
+
+        Contact(@Nullable String displayName, @Nullable String photoUri, long contactId) {
+            this.displayName = displayName;
+            this.photoUri = photoUri;
+            this.contactId = contactId;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final ContentObserver observer;
+    private final LruCache<String, Contact> entries = new LruCache<>(MAX_ENTRIES);
+
+    // Bumped on every change so lookups that raced a change are not cached.
+    private volatile long generation;
+    private boolean observing;
+
+    CallLogContacts(ContentResolver resolver, final Runnable onChange) {
+        this.resolver = resolver;
+        this.observer = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                generation++;
+                entries.evictAll();
+                onChange.run();
+            }
+        };
+    }
+
+    Contact lookup(@Nullable String number) {
+        String digits = CallLogNumbers.digits(number);
+        if (digits.isEmpty()) {
+            return Contact.NONE;
+        }
+
+        Contact contact = entries.get(digits);
+        if (contact != null) {
+            return contact;
+        }
+
+        synchronized (this) {
+            if (!observing) {
+                resolver.registerContentObserver(ContactsContract.AUTHORITY_URI, true, observer);
+                observing = true;
+            }
+        }
+
+        long startedAt = generation;
+        contact = query(number);
+        if (startedAt == generation) {
+            entries.put(digits, contact);
+        }
+        return contact;
+    }
+
+    synchronized void close() {
+        if (observing) {
+            resolver.unregisterContentObserver(observer);
+            observing = false;
+        }
+        entries.evictAll();
+    }
+
+    private Contact query(String number) {
+        Uri uri = Uri.withAppendedPath(PhoneLookup.CONTENT_FILTER_URI, Uri.encode(number));
+        // PhoneLookup._ID is the contact id on every API level; CONTACT_ID needs API 24.
+        String[] projection = { PhoneLookup._ID, PhoneLookup.DISPLAY_NAME, PhoneLookup.PHOTO_URI };
+        Cursor cursor = resolver.query(uri, projection, null, null, null);
+        if (cursor == null) {
+            return Contact.NONE;
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                return Contact.NONE;
+            }
+            return new Contact(cursor.getString(1), cursor.getString(2), cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+}
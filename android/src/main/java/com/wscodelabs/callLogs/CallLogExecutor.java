@@ -0,0 +1,274 @@
+package com.wscodelabs.callLogs;
+
+import android.os.OperationCanceledException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs call log scans off the shared native modules thread. Requests with the same key
+ * that are still in flight share one provider query, and each caller can cancel its own
+ * request by id. Interactive requests such as typeahead search run on a thread of their
+ * own, so they never wait behind long loads.
+ */
+final class CallLogExecutor {
+
+    static final String E_CANCELLED = "E_CANCELLED";
+    static final String E_BUSY = "E_BUSY";
+
+    private static final int THREADS = 2;
+    private static final int QUEUE_CAPACITY = 32;
+
+    interface Task {
+        Object run(CallLogRequest request) throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor interactiveExecutor;
+    private final Map<String, CallLogRequest> inFlight = new HashMap<>();
+    private final Map<String, CallLogRequest> byRequestId = new HashMap<>();
+    private final AtomicInteger anonymousIds = new AtomicInteger();
+
+    CallLogExecutor() {
+        executor = newPool(THREADS, "CallLogs-");
+        interactiveExecutor = newPool(1, "CallLogs-interactive-");
+    }
+
+    private static ThreadPoolExecutor newPool(int threads, final String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, name + count.incrementAndGet());
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Runs the task for the given coalescing key, or joins the identical request already in
+     * flight. The promise receives the task's result.
+     */
+    void submit(@Nullable String requestId, String key, Promise promise, Task task) {
+        submit(executor, requestId, key, promise, task);
+    }
+
+    /**
+     * Like {@link #submit}, but on the interactive thread. Tasks there must stay short.
+     */
+    void submitInteractive(@Nullable String requestId, String key, Promise promise, Task task) {
+        submit(interactiveExecutor, requestId, key, promise, task);
+    }
+
+    private void submit(ThreadPoolExecutor pool, @Nullable String requestId, String key, Promise promise,
+                        final Task task) {
+        if (requestId == null) {
+            requestId = "#" + anonymousIds.incrementAndGet();
+        }
+
+        final CallLogRequest request;
+        synchronized (this) {
+            CallLogRequest existing = inFlight.get(key);
+            if (existing != null) {
+                existing.waiters.add(new CallLogRequest.Waiter(requestId, promise));
+                byRequestId.put(requestId, existing);
+                return;
+            }
+
+            request = new CallLogRequest(key);
+            request.waiters.add(new CallLogRequest.Waiter(requestId, promise));
+            inFlight.put(key, request);
+            byRequestId.put(requestId, request);
+        }
+
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runRequest(request, task);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            for (CallLogRequest.Waiter waiter : complete(request)) {
+                waiter.promise.reject(E_BUSY, "Too many call log queries in flight", e);
+            }
+        }
+    }
+
+    /**
+     * Runs work that reports its own results, such as stream batches.
+     */
+    void execute(Runnable runnable) {
+        executor.execute(runnable);
+    }
+
+    /**
+     * Rejects the promise of the given request. The underlying scan is stopped once no
+     * coalesced caller is waiting for it any more.
+     */
+    boolean cancel(String requestId) {
+        CallLogRequest.Waiter cancelled = null;
+        synchronized (this) {
+            CallLogRequest request = byRequestId.remove(requestId);
+            if (request == null) {
+                return false;
+            }
+
+            for (CallLogRequest.Waiter waiter : request.waiters) {
+                if (waiter.requestId.equals(requestId)) {
+                    cancelled = waiter;
+                    break;
+                }
+            }
+            request.waiters.remove(cancelled);
+
+            if (request.waiters.isEmpty()) {
+                request.cancel();
+                inFlight.remove(request.key);
+            }
+        }
+
+        if (cancelled != null) {
+            cancelled.promise.reject(E_CANCELLED, "Call log request " + requestId + " was cancelled");
+        }
+        return true;
+    }
+
+    void shutdown() {
+        synchronized (this) {
+            for (CallLogRequest request : inFlight.values()) {
+                request.cancel();
+            }
+        }
+        executor.shutdownNow();
+        interactiveExecutor.shutdownNow();
+    }
+
+    private void runRequest(CallLogRequest request, Task task) {
+        Object result = null;
+        Exception error = null;
+        try {
+            if (!request.isCancelled()) {
+                result = task.run(request);
+            }
+        } catch (OperationCanceledException e) {
+            // Only reachable once every waiter has been rejected by cancel().
+        } catch (Exception e) {
+            error = e;
+        }
+
+        List<CallLogRequest.Waiter> waiters = complete(request);
+        if (request.isCancelled() || waiters.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < waiters.size(); i++) {
+            Promise promise = waiters.get(i).promise;
+            if (error != null) {
+                promise.reject(error);
+            } else {
+                // A native array or map can only be handed to the bridge once.
+                promise.resolve(i == waiters.size() - 1 ? result : copy(result));
+            }
+        }
+    }
+
+    private synchronized List<CallLogRequest.Waiter> complete(CallLogRequest request) {
+        if (inFlight.get(request.key) == request) {
+            inFlight.remove(request.key);
+        }
+        List<CallLogRequest.Waiter> waiters = new ArrayList<>(request.waiters);
+        for (CallLogRequest.Waiter waiter : waiters) {
+            byRequestId.remove(waiter.requestId);
+        }
+        request.waiters.clear();
+        return waiters;
+    }
+
+    static Object copy(Object value) {
+        if (value instanceof ReadableArray) {
+            return copyArray((ReadableArray) value);
+        }
+        if (value instanceof ReadableMap) {
+            return copyMap((ReadableMap) value);
+        }
+        return value;
+    }
+
+    private static WritableArray copyArray(ReadableArray array) {
+        WritableArray copy = Arguments.createArray();
+        for (int i = 0; i < array.size(); i++) {
+            switch (array.getType(i)) {
+                case Null:
+                    copy.pushNull();
+                    break;
+                case Boolean:
+                    copy.pushBoolean(array.getBoolean(i));
+                    break;
+                case Number:
+                    copy.pushDouble(array.getDouble(i));
+                    break;
+                case String:
+                    copy.pushString(array.getString(i));
+                    break;
+                case Map:
+                    copy.pushMap(copyMap(array.getMap(i)));
+                    break;
+                case Array:
+                    copy.pushArray(copyArray(array.getArray(i)));
+                    break;
+            }
+        }
+        return copy;
+    }
+
+    private static WritableMap copyMap(ReadableMap map) {
+        WritableMap copy = Arguments.createMap();
+        ReadableMapKeySetIterator keys = map.keySetIterator();
+        while (keys.hasNextKey()) {
+            String key = keys.nextKey();
+            switch (map.getType(key)) {
+                case Null:
+                    copy.putNull(key);
+                    break;
+                case Boolean:
+                    copy.putBoolean(key, map.getBoolean(key));
+                    break;
+                case Number:
+                    copy.putDouble(key, map.getDouble(key));
+                    break;
+                case String:
+                    copy.putString(key, map.getString(key));
+                    break;
+                case Map:
+                    copy.putMap(key, copyMap(map.getMap(key)));
+                    break;
+                case Array:
+                    copy.putArray(key, copyArray(map.getArray(key)));
+                    break;
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,162 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Writes a filtered call log straight from the cursor to an NDJSON or CSV file, optionally
+ * gzip-compressed. Rows are encoded one at a time into a reused buffer, so memory use does
+ * not depend on the number of rows. When resuming from a checkpoint the file is appended to;
+ * gzip readers treat the appended part as another member of the same stream.
+ */
+final class CallLogExporter {
+
+    static final String NDJSON = "ndjson";
+    static final String CSV = "csv";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final boolean csv;
+    private final boolean gzip;
+    @Nullable private final CallLogPageToken resumeFrom;
+
+    CallLogExporter(File file, String format, boolean gzip, @Nullable CallLogPageToken resumeFrom) {
+        if (!NDJSON.equals(format) && !CSV.equals(format)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+        this.file = file;
+        this.csv = CSV.equals(format);
+        this.gzip = gzip;
+        this.resumeFrom = resumeFrom;
+    }
+
+    WritableMap export(Cursor cursor, CallLogQuery query, CallLogProjection projection, CallLogRequest request)
+            throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+
+        boolean append = resumeFrom != null && file.exists();
+        CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(file, append));
+        OutputStream out = gzip ? new GZIPOutputStream(counter, BUFFER_SIZE) : counter;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), BUFFER_SIZE);
+
+        int rowCount = 0;
+        CallLogPageToken checkpoint = resumeFrom;
+        try {
+            StringBuilder line = new StringBuilder(256);
+            if (csv && !append) {
+                for (int i = 0; i < projection.size(); i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    CallLogProjection.appendCsvField(projection.key(i), line);
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+
+            final int DATE_COLUMN_INDEX = cursor.getColumnIndexOrThrow(Calls.DATE);
+            final int ID_COLUMN_INDEX = cursor.getColumnIndexOrThrow(Calls._ID);
+            long lastDate = 0;
+            long lastId = 0;
+            CallLogTrace trace = request.trace;
+            long started = trace.now();
+            int scannedCount = 0;
+
+            while (!request.isCancelled() && cursor.moveToNext()) {
+                scannedCount++;
+                if (!query.matches(cursor)) {
+                    continue;
+                }
+
+                long decodeStarted = trace.now();
+                line.setLength(0);
+                if (csv) {
+                    appendCsvRow(cursor, projection, line);
+                } else {
+                    appendJsonRow(cursor, projection, line);
+                }
+                line.append('\n');
+                writer.append(line);
+                trace.decoded(decodeStarted);
+                rowCount++;
+                lastDate = cursor.getLong(DATE_COLUMN_INDEX);
+                lastId = cursor.getLong(ID_COLUMN_INDEX);
+            }
+            trace.scanned(started, scannedCount, rowCount);
+
+            if (rowCount > 0) {
+                checkpoint = new CallLogPageToken(lastDate, lastId);
+            }
+        } finally {
+            writer.close();
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putString("path", file.getAbsolutePath());
+        result.putInt("rowCount", rowCount);
+        result.putDouble("byteCount", counter.count);
+        result.putString("checkpoint", checkpoint != null ? checkpoint.encode() : null);
+        return result;
+    }
+
+    private static void appendJsonRow(Cursor cursor, CallLogProjection projection, StringBuilder line) {
+        line.append('{');
+        for (int i = 0; i < projection.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            CallLogProjection.appendJsonString(projection.key(i), line);
+            line.append(':');
+            projection.appendText(cursor, i, line, true);
+        }
+        line.append('}');
+    }
+
+    private static void appendCsvRow(Cursor cursor, CallLogProjection projection, StringBuilder line) {
+        for (int i = 0; i < projection.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            projection.appendText(cursor, i, line, false);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.wscodelabs.callLogs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import javax.annotation.Nullable;
+
+/**
+ * The filter passed to loadWithFilter, parsed once per request.
+ */
+final class CallLogFilter {
+
+    static final long NO_MIN_TIMESTAMP = 0;
+    static final long NO_MAX_TIMESTAMP = -1;
+
+    // What a fields entry may name: the derived keys of CallLogProjection and the columns of
+    // the call log provider. Columns added after API 28 are spelled out.
+    private static final Set<String> KNOWN_FIELDS = new HashSet<>(Arrays.asList(
+            CallLogProjection.PHONE_NUMBER, CallLogProjection.DATE_TIME, CallLogProjection.NORMALIZED_TYPE,
+            CallLogProjection.TIMESTAMP, CallLogProjection.RAW_TYPE,
+            Calls._ID, Calls.NUMBER, Calls.NUMBER_PRESENTATION, Calls.POST_DIAL_DIGITS, Calls.VIA_NUMBER,
+            Calls.DATE, Calls.DURATION, Calls.DATA_USAGE, Calls.TYPE, Calls.FEATURES, Calls.NEW, Calls.IS_READ,
+            Calls.CACHED_NAME, Calls.CACHED_NUMBER_TYPE, Calls.CACHED_NUMBER_LABEL, Calls.COUNTRY_ISO,
+            Calls.VOICEMAIL_URI, Calls.TRANSCRIPTION, Calls.GEOCODED_LOCATION, Calls.PHONE_ACCOUNT_COMPONENT_NAME,
+            Calls.PHONE_ACCOUNT_ID, Calls.CACHED_LOOKUP_URI, Calls.CACHED_MATCHED_NUMBER,
+            Calls.CACHED_NORMALIZED_NUMBER, Calls.CACHED_PHOTO_ID, Calls.CACHED_PHOTO_URI,
+            Calls.CACHED_FORMATTED_NUMBER, Calls.LAST_MODIFIED,
+            "block_reason", "call_screening_app_name", "call_screening_component_name", "missed_reason",
+            "composer_photo_uri", "location", "priority", "subject", "is_business_call", "asserted_display_name"));
+    // Only resolved when contacts are enriched; otherwise they would be sent to the provider.
+    private static final Set<String> CONTACT_FIELDS = new HashSet<>(Arrays.asList(
+            CallLogProjection.DISPLAY_NAME, CallLogProjection.PHOTO_URI, CallLogProjection.CONTACT_ID));
+
+    final long minTimestamp;
+    final long maxTimestamp;
+    final Set<String> types;
+    final Set<String> phoneNumbers;
+    // Keys to emit for each call log, or null for every column.
+    @Nullable final Set<String> fields;
+    // Whether results are returned as CallLogColumns instead of one map per row.
+    final boolean columnar;
+    // Whether runs of consecutive calls with the same number are collapsed into CallLogGroups.
+    final boolean groupConsecutive;
+    // Whether each call log is joined with its contact through CallLogContacts.
+    final boolean enrichContacts;
+
+    private CallLogFilter(long minTimestamp, long maxTimestamp, Set<String> types, Set<String> phoneNumbers,
+                          @Nullable Set<String> fields, boolean columnar, boolean groupConsecutive,
+                          boolean enrichContacts) {
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.types = types;
+        this.phoneNumbers = phoneNumbers;
+        this.fields = fields;
+        this.columnar = columnar;
+        this.groupConsecutive = groupConsecutive;
+        this.enrichContacts = enrichContacts;
+    }
+
+    static CallLogFilter from(@Nullable ReadableMap filter) throws JSONException {
+        if (filter == null) {
+            return new CallLogFilter(NO_MIN_TIMESTAMP, NO_MAX_TIMESTAMP,
+                    Collections.<String>emptySet(), Collections.<String>emptySet(), null, false, false, false);
+        }
+
+        boolean columnar = parseColumnar(optString(filter, "format"));
+        boolean groupConsecutive = parseGroupBy(optString(filter, "groupBy"));
+        if (columnar && groupConsecutive) {
+            throw new JSONException("groupBy is not supported with the columnar format");
+        }
+
+        boolean enrichContacts = filter.hasKey("enrichContacts") && !filter.isNull("enrichContacts")
+                && filter.getBoolean("enrichContacts");
+
+        return new CallLogFilter(
+                parseTimestamp(optString(filter, "minTimestamp"), NO_MIN_TIMESTAMP),
+                parseTimestamp(optString(filter, "maxTimestamp"), NO_MAX_TIMESTAMP),
+                parseSet(optString(filter, "types")),
+                parseSet(optString(filter, "phoneNumbers")),
+                parseFields(optString(filter, "fields"), enrichContacts),
+                columnar,
+                groupConsecutive,
+                enrichContacts);
+    }
+
+    /**
+     * Returns this filter, or throws when it asks for groups from an entry point that only
+     * returns call logs.
+     */
+    CallLogFilter requireUngrouped(String method) throws JSONException {
+        if (groupConsecutive) {
+            throw new JSONException(method + " does not support groupBy");
+        }
+        return this;
+    }
+
+    boolean hasMinTimestamp() {
+        return minTimestamp != NO_MIN_TIMESTAMP;
+    }
+
+    boolean hasMaxTimestamp() {
+        return maxTimestamp != NO_MAX_TIMESTAMP;
+    }
+
+    /**
+     * A canonical description of the filter, equal for filters that select the same rows
+     * in the same shape.
+     */
+    String key() {
+        return minTimestamp + "|" + maxTimestamp + "|" + sorted(types) + "|" + sorted(phoneNumbers) + "|" + fields
+                + "|" + columnar + "|" + groupConsecutive + "|" + enrichContacts;
+    }
+
+    private static List<String> sorted(Set<String> values) {
+        List<String> list = new ArrayList<>(values);
+        Collections.sort(list);
+        return list;
+    }
+
+    @Nullable
+    static String optString(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
+    }
+
+    private static boolean parseColumnar(@Nullable String format) throws JSONException {
+        if (format == null || format.equals("rows")) {
+            return false;
+        }
+        if (format.equals(CallLogColumns.FORMAT)) {
+            return true;
+        }
+        throw new JSONException("Unsupported format: " + format);
+    }
+
+    private static boolean parseGroupBy(@Nullable String groupBy) throws JSONException {
+        if (groupBy == null) {
+            return false;
+        }
+        if (groupBy.equals(CallLogGroups.CONSECUTIVE_NUMBER)) {
+            return true;
+        }
+        throw new JSONException("Unsupported groupBy: " + groupBy);
+    }
+
+    private static long parseTimestamp(@Nullable String value, long fallback) throws JSONException {
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid timestamp: " + value);
+        }
+    }
+
+    private static Set<String> parseSet(@Nullable String json) throws JSONException {
+        if (json == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Arrays.asList(CallLogModule.toStringArray(new JSONArray(json))));
+    }
+
+    /**
+     * Parses the requested keys, rejecting names that are neither a derived key nor a
+     * provider column before they reach the provider's projection.
+     */
+    @Nullable
+    private static Set<String> parseFields(@Nullable String json, boolean enrichContacts) throws JSONException {
+        if (json == null) {
+            return null;
+        }
+        Set<String> fields = new LinkedHashSet<>(Arrays.asList(CallLogModule.toStringArray(new JSONArray(json))));
+        for (String field : fields) {
+            if (!KNOWN_FIELDS.contains(field) && !(enrichContacts && CONTACT_FIELDS.contains(field))) {
+                throw new JSONException(CONTACT_FIELDS.contains(field)
+                        ? field + " is only available with enrichContacts"
+                        : "Unknown field: " + field);
+            }
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,127 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Collapses runs of consecutive calls with the same number into one entry, the way the
+ * dialer shows "John (4)". Each entry holds the most recent call of the run plus its count,
+ * per-type counts, total duration and first and last timestamps. Calls without digits, such
+ * as private or unknown callers, always form a group of their own.
+ */
+final class CallLogGroups implements CallLogSink {
+
+    static final String CONSECUTIVE_NUMBER = "consecutiveNumber";
+
+    // Columns read for every row on top of the requested fields.
+    static final String[] COLUMNS = CallLogNumbers.hasNormalizedNumber()
+            ? new String[] { Calls.NUMBER, Calls.CACHED_NORMALIZED_NUMBER, Calls.TYPE, Calls.DATE, Calls.DURATION }
+            : new String[] { Calls.NUMBER, Calls.TYPE, Calls.DATE, Calls.DURATION };
+    // Keys of a group besides those of its call, including the types breakdown.
+    static final int KEYS = 6 + CallType.KNOWN_CODES.length;
+
+    private final CallLogProjection projection;
+    private final WritableArray result = Arguments.createArray();
+    private int size;
+
+    private int numberIndex = -1;
+    private int normalizedNumberIndex = -1;
+    private int typeIndex;
+    private int dateIndex;
+    private int durationIndex;
+
+    // The open run; rows arrive newest first, so the first row is its most recent call.
+    private WritableMap call;
+    private String digits;
+    private int count;
+    private final long[] typeCounts = new long[CallType.KNOWN_CODES.length + 1];
+    private long duration;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    CallLogGroups(CallLogProjection projection) {
+        this.projection = projection;
+    }
+
+    void bind(Cursor cursor) {
+        numberIndex = cursor.getColumnIndex(Calls.NUMBER);
+        normalizedNumberIndex = cursor.getColumnIndex(Calls.CACHED_NORMALIZED_NUMBER);
+        typeIndex = cursor.getColumnIndex(Calls.TYPE);
+        dateIndex = cursor.getColumnIndex(Calls.DATE);
+        durationIndex = cursor.getColumnIndex(Calls.DURATION);
+    }
+
+    /**
+     * Whether the row belongs to the open run rather than starting a new group.
+     */
+    boolean continuesGroup(Cursor cursor) {
+        return call != null && !digits.isEmpty() && CallLogNumbers.sameNumber(digits, digitsOf(cursor));
+    }
+
+    /**
+     * Number of groups started so far, including the open one.
+     */
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Cursor cursor) {
+        if (!continuesGroup(cursor)) {
+            flush();
+            call = Arguments.createMap();
+            projection.write(cursor, call);
+            digits = digitsOf(cursor);
+            lastTimestamp = cursor.getLong(dateIndex);
+            size++;
+        }
+
+        int type = cursor.getInt(typeIndex);
+        typeCounts[type > 0 && type < typeCounts.length ? type : 0]++;
+        duration += cursor.getLong(durationIndex);
+        firstTimestamp = cursor.getLong(dateIndex);
+        count++;
+    }
+
+    @Override
+    public Object result() {
+        flush();
+        return result;
+    }
+
+    private String digitsOf(Cursor cursor) {
+        String normalized = normalizedNumberIndex != -1 ? cursor.getString(normalizedNumberIndex) : null;
+        return CallLogNumbers.digits(normalized != null ? normalized : cursor.getString(numberIndex));
+    }
+
+    private void flush() {
+        if (call == null) {
+            return;
+        }
+
+        WritableMap types = Arguments.createMap();
+        for (int code = 0; code < typeCounts.length; code++) {
+            if (typeCounts[code] > 0) {
+                types.putDouble(CallType.resolve(code), typeCounts[code]);
+            }
+            typeCounts[code] = 0;
+        }
+
+        WritableMap group = Arguments.createMap();
+        group.putMap("call", call);
+        group.putInt("count", count);
+        group.putMap("types", types);
+        group.putDouble("duration", duration);
+        group.putDouble("firstTimestamp", firstTimestamp);
+        group.putDouble("lastTimestamp", lastTimestamp);
+        result.pushMap(group);
+
+        call = null;
+        count = 0;
+        duration = 0;
+    }
+}
@@ -0,0 +1,59 @@
+package com.wscodelabs.callLogs;
+
+import java.util.ArrayDeque;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Opt-in per-request instrumentation. While enabled, the traces of the most recent requests
+ * are kept for getStats(); disabling drops them.
+ */
+final class CallLogMetrics {
+
+    private static final int MAX_TRACES = 100;
+
+    private final ArrayDeque<CallLogTrace> traces = new ArrayDeque<>();
+    private volatile boolean enabled;
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            synchronized (traces) {
+                traces.clear();
+            }
+        }
+    }
+
+    CallLogTrace start(String method, String key) {
+        return enabled ? new CallLogTrace(method, key, true) : CallLogTrace.DISABLED;
+    }
+
+    void record(CallLogTrace trace) {
+        if (!trace.isEnabled() || !enabled) {
+            return;
+        }
+        trace.finish();
+        synchronized (traces) {
+            if (traces.size() == MAX_TRACES) {
+                traces.removeFirst();
+            }
+            traces.addLast(trace);
+        }
+    }
+
+    WritableMap stats() {
+        WritableArray requests = Arguments.createArray();
+        synchronized (traces) {
+            for (CallLogTrace trace : traces) {
+                requests.pushMap(trace.toMap());
+            }
+        }
+
+        WritableMap stats = Arguments.createMap();
+        stats.putBoolean("enabled", enabled);
+        stats.putArray("requests", requests);
+        return stats;
+    }
+}
@@ -1,25 +1,31 @@
 package com.wscodelabs.callLogs;
 
-import android.provider.CallLog;
 import android.provider.CallLog.Calls;
 import android.database.Cursor;
+import android.os.OperationCanceledException;
 import android.content.Context;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -28,11 +34,36 @@ import javax.annotation.Nullable;
 
 public class CallLogModule extends ReactContextBaseJavaModule {
 
+    static final String STREAM_BATCH_EVENT = "CallLogStreamBatch";
+    static final String STREAM_END_EVENT = "CallLogStreamEnd";
+    static final String STREAM_ERROR_EVENT = "CallLogStreamError";
+    static final String CHANGES_EVENT = "CallLogChanges";
+    static final String CHANGES_ERROR_EVENT = "CallLogChangesError";
+
     private Context context;
 
+    private final CallLogExecutor executor = new CallLogExecutor();
+    private final CallLogCache cache;
+    private final CallLogNumberIndex numberIndex;
+    private final CallLogSearchIndex searchIndex;
+    private final CallLogContacts contacts;
+    private final CallLogMetrics metrics = new CallLogMetrics();
+    private final Map<String, CallLogStream> streams = new ConcurrentHashMap<>();
+    @Nullable private CallLogChangeFeed changeFeed;
+
     public CallLogModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.context = reactContext;
+        this.cache = new CallLogCache(reactContext.getContentResolver());
+        this.numberIndex = new CallLogNumberIndex(reactContext.getContentResolver());
+        this.searchIndex = new CallLogSearchIndex(reactContext.getContentResolver());
+        // Enriched results hold contact details, so they go stale with the contacts too.
+        this.contacts = new CallLogContacts(reactContext.getContentResolver(), new Runnable() {
+            @Override
+            public void run() {
+                cache.invalidateContacts();
+            }
+        });
     }
 
     @Override
@@ -47,236 +78,662 @@ public class CallLogModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void load(int limit, Promise promise) {
-        loadWithFilter(limit, null, promise);
+        loadWithFilter(limit, null, null, promise);
     }
 
     @ReactMethod
-    public void loadWithFilter(int limit, @Nullable ReadableMap filter, Promise promise) {
+    public void loadWithFilter(final int limit, @Nullable ReadableMap filter, @Nullable String requestId,
+                               Promise promise) {
+        final CallLogFilter callLogFilter;
         try {
-            Cursor cursor = this.context.getContentResolver().query(CallLog.Calls.CONTENT_URI,
-                    null, null, null, CallLog.Calls.DATE + " DESC");
+            callLogFilter = CallLogFilter.from(filter);
+        } catch (JSONException e) {
+            promise.reject(e);
+            return;
+        }
 
-            WritableArray result = Arguments.createArray();
+        final String key = (callLogFilter.enrichContacts ? CallLogCache.CONTACTS_PREFIX : "")
+                + "load|" + limit + "|" + callLogFilter.key();
+        final Object cached = cache.get(key);
+        if (cached != null) {
+            // Copying walks the whole result, so it runs on the executor like a scan would.
+            executor.submit(requestId, key, promise, traced("load", key, new CallLogExecutor.Task() {
+                @Override
+                public Object run(CallLogRequest request) {
+                    if (request.trace.isEnabled()) {
+                        request.trace.cached(resultLength(cached));
+                    }
+                    long marshallingStarted = request.trace.now();
+                    Object result = CallLogExecutor.copy(cached);
+                    request.trace.marshalled(marshallingStarted);
+                    return result;
+                }
+            }));
+            return;
+        }
 
-            if (cursor == null) {
-                promise.resolve(result);
-                return;
+        final long generation = cache.generation();
+        executor.submit(requestId, key, promise, traced("load", key, new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) {
+                CallLogProjection projection = projectionFor(callLogFilter);
+                CallLogQuery query = callLogFilter.groupConsecutive
+                        // The limit counts groups, so the provider cannot apply it.
+                        ? CallLogQuery.plan(callLogFilter, projection, -1, numberIndex, CallLogGroups.COLUMNS)
+                        : CallLogQuery.plan(callLogFilter, projection, limit, numberIndex);
+                Cursor cursor = execute(query, request);
+
+                if (cursor == null) {
+                    return callLogFilter.columnar ? CallLogColumns.empty() : Arguments.createArray();
+                }
+
+                try {
+                    projection.bind(cursor);
+                    query.bind(cursor);
+                    CallLogSink sink;
+                    int rows;
+                    int keysPerRow = projection.size();
+                    if (callLogFilter.groupConsecutive) {
+                        CallLogGroups groups = new CallLogGroups(projection);
+                        groups.bind(cursor);
+                        readGroups(cursor, query, limit, groups, request);
+                        sink = groups;
+                        rows = groups.size();
+                        // Each group wraps its call in a map with the group totals.
+                        keysPerRow += CallLogGroups.KEYS;
+                    } else {
+                        sink = newSink(callLogFilter, projection);
+                        rows = readCallLogs(cursor, query, limit, sink, request);
+                    }
+
+                    long marshallingStarted = request.trace.now();
+                    Object result = cache.put(key, sink.result(), generation, rows, keysPerRow);
+                    request.trace.marshalled(marshallingStarted);
+                    return result;
+                } finally {
+                    cursor.close();
+                }
             }
+        }));
+    }
 
+    @ReactMethod
+    public void loadBatch(ReadableArray queries, @Nullable String requestId, Promise promise) {
+        final List<CallLogFilter> filters = new ArrayList<>();
+        final int[] limits = new int[queries.size()];
+        StringBuilder key = new StringBuilder("batch");
+        try {
+            for (int i = 0; i < queries.size(); i++) {
+                ReadableMap query = queries.getMap(i);
+                CallLogFilter callLogFilter = CallLogFilter.from(
+                        query.hasKey("filter") && !query.isNull("filter") ? query.getMap("filter") : null);
+                limits[i] = query.hasKey("limit") && !query.isNull("limit") ? query.getInt("limit") : -1;
+                filters.add(callLogFilter);
+                key.append('|').append(limits[i]).append('|').append(callLogFilter.key());
+            }
+        } catch (JSONException e) {
+            promise.reject(e);
+            return;
+        }
 
-            boolean nullFilter = filter == null;
-            String minTimestamp = !nullFilter && filter.hasKey("minTimestamp") ? filter.getString("minTimestamp") : "0";
-            String maxTimestamp = !nullFilter && filter.hasKey("maxTimestamp") ? filter.getString("maxTimestamp") : "-1";
+        executor.submit(requestId, key.toString(), promise, traced("loadBatch", key.toString(), new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) {
+                CallLogBatch batch = new CallLogBatch();
+                for (int i = 0; i < filters.size(); i++) {
+                    batch.add(filters.get(i), limits[i], projectionFor(filters.get(i)));
+                }
+                if (batch.isSatisfied()) {
+                    return batch.result();
+                }
 
-            String types = !nullFilter && filter.hasKey("types") ? filter.getString("types") : "[]";
-            JSONArray typesArray= new JSONArray(types);
-            Set<String> typeSet = new HashSet<>(Arrays.asList(toStringArray(typesArray)));
+                CallLogQuery query = CallLogQuery.planBatch(filters, batch.columns(), numberIndex);
+                Cursor cursor = execute(query, request);
+                if (cursor == null) {
+                    return batch.result();
+                }
 
-            String phoneNumbers = !nullFilter && filter.hasKey("phoneNumbers") ? filter.getString("phoneNumbers") : "[]";
-            JSONArray phoneNumbersArray= new JSONArray(phoneNumbers);
-            Set<String> phoneNumberSet = new HashSet<>(Arrays.asList(toStringArray(phoneNumbersArray)));
+                try {
+                    batch.bind(cursor);
+                    CallLogTrace trace = request.trace;
+                    long started = trace.now();
+                    int scanned = 0;
+                    while (!batch.isSatisfied() && !request.isCancelled() && cursor.moveToNext()) {
+                        batch.offer(cursor, trace);
+                        scanned++;
+                    }
+                    trace.scanned(started, scanned, batch.rowsReturned());
+
+                    long marshallingStarted = trace.now();
+                    WritableArray result = batch.result();
+                    trace.marshalled(marshallingStarted);
+                    return result;
+                } finally {
+                    cursor.close();
+                }
+            }
+        }));
+    }
 
-            int callLogCount = 0;
+    @ReactMethod
+    public void loadPage(final int pageSize, @Nullable final String afterToken, @Nullable ReadableMap filter,
+                         @Nullable String requestId, Promise promise) {
+        final CallLogFilter callLogFilter;
+        try {
+            callLogFilter = CallLogFilter.from(filter).requireUngrouped("loadPage");
+        } catch (JSONException e) {
+            promise.reject(e);
+            return;
+        }
 
-            final int NUMBER_COLUMN_INDEX = cursor.getColumnIndex(Calls.NUMBER);
-            final int TYPE_COLUMN_INDEX = cursor.getColumnIndex(Calls.TYPE);
-            final int DATE_COLUMN_INDEX = cursor.getColumnIndex(Calls.DATE);
-            final int DURATION_COLUMN_INDEX = cursor.getColumnIndex(Calls.DURATION);
-            final int NAME_COLUMN_INDEX = cursor.getColumnIndex(Calls.CACHED_NAME);
+        String key = "page|" + pageSize + "|" + afterToken + "|" + callLogFilter.key();
+        executor.submit(requestId, key, promise, traced("loadPage", key, new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) {
+                CallLogProjection projection = projectionFor(callLogFilter);
+                CallLogPageToken after = afterToken != null ? CallLogPageToken.decode(afterToken) : null;
+                // One extra row tells whether another page exists.
+                CallLogQuery query = CallLogQuery.planPage(callLogFilter, projection, pageSize + 1, after, numberIndex);
+                Cursor cursor = execute(query, request);
+
+                WritableMap page = Arguments.createMap();
+                Object items = callLogFilter.columnar ? CallLogColumns.empty() : Arguments.createArray();
+                String nextToken = null;
+
+                if (cursor != null) {
+                    try {
+                        projection.bind(cursor);
+                        query.bind(cursor);
+                        CallLogSink sink = newSink(callLogFilter, projection);
+                        int count = readCallLogs(cursor, query, pageSize, sink, request);
+                        long marshallingStarted = request.trace.now();
+                        items = sink.result();
+                        request.trace.marshalled(marshallingStarted);
+
+                        // readCallLogs leaves the cursor on the last row it returned.
+                        if (count == pageSize && count > 0) {
+                            CallLogPageToken last = CallLogPageToken.at(cursor);
+                            if (hasNextMatch(cursor, query)) {
+                                nextToken = last.encode();
+                            }
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
 
+                if (items instanceof WritableMap) {
+                    page.putMap("items", (WritableMap) items);
+                } else {
+                    page.putArray("items", (WritableArray) items);
+                }
+                page.putString("nextToken", nextToken);
+                return page;
+            }
+        }));
+    }
 
+    @ReactMethod
+    public void aggregate(@Nullable ReadableMap spec, @Nullable ReadableMap filter, @Nullable String requestId,
+                          Promise promise) {
+        final CallLogAggregator.Spec aggregateSpec;
+        final CallLogFilter callLogFilter;
+        try {
+            aggregateSpec = CallLogAggregator.Spec.from(spec);
+            callLogFilter = CallLogFilter.from(filter).requireUngrouped("aggregate");
+        } catch (JSONException | IllegalArgumentException e) {
+            promise.reject(e);
+            return;
+        }
 
-            boolean minTimestampDefined = minTimestamp != null && !minTimestamp.equals("0");
-            boolean minTimestampReached = false;
+        String key = "aggregate|" + aggregateSpec.key() + "|" + callLogFilter.key();
+        executor.submit(requestId, key, promise, traced("aggregate", key, new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) {
+                Set<String> columns = new LinkedHashSet<>(Arrays.asList(Calls.DATE, Calls.DURATION, Calls.TYPE));
+                if (aggregateSpec.byNumber) {
+                    columns.addAll(Arrays.asList(CallLogNumbers.columns()));
+                }
+                CallLogQuery query = CallLogQuery.plan(callLogFilter, CallLogProjection.of(columns), -1, numberIndex);
+                Cursor cursor = execute(query, request);
 
-            while (cursor.moveToNext() && this.shouldContinue(limit, callLogCount) && !minTimestampReached) {
-                String phoneNumber = cursor.getString(NUMBER_COLUMN_INDEX);
-                int duration = cursor.getInt(DURATION_COLUMN_INDEX);
-                String name = cursor.getString(NAME_COLUMN_INDEX);
+                CallLogAggregator aggregator = new CallLogAggregator(aggregateSpec);
+                if (cursor == null) {
+                    return aggregator.toMap();
+                }
 
-                String timestampStr = cursor.getString(DATE_COLUMN_INDEX);
-                minTimestampReached = minTimestampDefined && Long.parseLong(timestampStr) <= Long.parseLong(minTimestamp);
+                try {
+                    query.bind(cursor);
+                    final int NUMBER_COLUMN_INDEX = cursor.getColumnIndex(Calls.NUMBER);
+                    final int TYPE_COLUMN_INDEX = cursor.getColumnIndex(Calls.TYPE);
+                    final int DATE_COLUMN_INDEX = cursor.getColumnIndex(Calls.DATE);
+                    final int DURATION_COLUMN_INDEX = cursor.getColumnIndex(Calls.DURATION);
+                    final int NORMALIZED_NUMBER_COLUMN_INDEX = CallLogNumbers.hasNormalizedNumber()
+                            ? cursor.getColumnIndex(Calls.CACHED_NORMALIZED_NUMBER) : -1;
+
+                    long started = request.trace.now();
+                    int scanned = 0;
+                    int matched = 0;
+                    while (!request.isCancelled() && cursor.moveToNext()) {
+                        scanned++;
+                        if (query.matches(cursor)) {
+                            aggregator.add(
+                                    cursor.getInt(TYPE_COLUMN_INDEX),
+                                    cursor.getLong(DATE_COLUMN_INDEX),
+                                    cursor.getLong(DURATION_COLUMN_INDEX),
+                                    NUMBER_COLUMN_INDEX != -1 ? cursor.getString(NUMBER_COLUMN_INDEX) : null,
+                                    NORMALIZED_NUMBER_COLUMN_INDEX != -1
+                                            ? cursor.getString(NORMALIZED_NUMBER_COLUMN_INDEX) : null);
+                            matched++;
+                        }
+                    }
+                    request.trace.scanned(started, scanned, matched);
+                } finally {
+                    cursor.close();
+                }
 
-                DateFormat df = SimpleDateFormat.getDateTimeInstance(SimpleDateFormat.MEDIUM, SimpleDateFormat.MEDIUM);
-                //DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                String dateTime = df.format(new Date(Long.valueOf(timestampStr)));
+                long marshallingStarted = request.trace.now();
+                WritableMap result = aggregator.toMap();
+                request.trace.marshalled(marshallingStarted);
+                return result;
+            }
+        }));
+    }
 
-                String type = this.resolveCallType(cursor.getInt(TYPE_COLUMN_INDEX));
+    @ReactMethod
+    public void exportTo(final String path, final String format, @Nullable ReadableMap filter,
+                         @Nullable ReadableMap options, Promise promise) {
+        final CallLogFilter callLogFilter;
+        final CallLogPageToken resumeFrom;
+        final boolean gzip;
+        final String requestId;
+        try {
+            callLogFilter = CallLogFilter.from(filter).requireUngrouped("exportTo");
+            String checkpoint = options != null ? CallLogFilter.optString(options, "resumeFrom") : null;
+            resumeFrom = checkpoint != null ? CallLogPageToken.decode(checkpoint) : null;
+            gzip = options != null && options.hasKey("gzip") && options.getBoolean("gzip");
+            requestId = options != null ? CallLogFilter.optString(options, "requestId") : null;
+        } catch (JSONException | IllegalArgumentException e) {
+            promise.reject(e);
+            return;
+        }
 
-                boolean passesPhoneFilter = phoneNumberSet == null || phoneNumberSet.isEmpty() || phoneNumberSet.contains(phoneNumber);
-                boolean passesTypeFilter = typeSet == null || typeSet.isEmpty() || typeSet.contains(type);
-                boolean passesMinTimestampFilter = minTimestamp == null || minTimestamp.equals("0") || Long.parseLong(timestampStr) >= Long.parseLong(minTimestamp);
-                boolean passesMaxTimestampFilter = maxTimestamp == null || maxTimestamp.equals("-1") || Long.parseLong(timestampStr) <= Long.parseLong(maxTimestamp);
-                boolean passesFilter = passesPhoneFilter && passesTypeFilter && passesMinTimestampFilter && passesMaxTimestampFilter;
+        final File file = new File(path).isAbsolute() ? new File(path) : new File(context.getFilesDir(), path);
+        String key = "export|" + file + "|" + format + "|" + gzip + "|"
+                + (resumeFrom != null ? resumeFrom.encode() : null) + "|" + callLogFilter.key();
+        executor.submit(requestId, key, promise, traced("exportTo", key, new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) throws IOException {
+                CallLogExporter exporter = new CallLogExporter(file, format, gzip, resumeFrom);
+                CallLogProjection projection = projectionFor(callLogFilter);
+                // Keyset order makes the checkpoint of the last written row resumable.
+                CallLogQuery query = CallLogQuery.planPage(callLogFilter, projection, -1, resumeFrom, numberIndex);
+                Cursor cursor = execute(query, request);
+                if (cursor == null) {
+                    throw new IOException("Call log provider is unavailable");
+                }
 
-                if (passesFilter) {
-                    WritableMap callLog = Arguments.createMap();
-                    callLog.putString("phoneNumber", phoneNumber);
-                    // callLog.putInt("duration", duration);
-                    // callLog.putString("name", name);
-                    // callLog.putString("timestamp", timestampStr);
-                    callLog.putString("dateTime", dateTime);
-                    callLog.putString("normalizedType", type);
-                    // callLog.putInt("rawType", cursor.getInt(TYPE_COLUMN_INDEX));
+                try {
+                    projection.bind(cursor);
+                    query.bind(cursor);
+                    return exporter.export(cursor, query, projection, request);
+                } finally {
+                    cursor.close();
+                }
+            }
+        }));
+    }
 
-                    // Get all column names
-                    String[] columnNames = cursor.getColumnNames();
+    @ReactMethod
+    public void search(final String query, final int limit, @Nullable String requestId, Promise promise) {
+        String key = "search|" + limit + "|" + query;
+        executor.submitInteractive(requestId, key, promise, traced("search", key, new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) {
+                return searchIndex.search(query, limit, request);
+            }
+        }));
+    }
 
-                    for (String columnName : columnNames) {
-                        int columnIndex = cursor.getColumnIndex(columnName);
-                        
-                        // Ensure column index is valid and retrieve the value
-                        if (columnIndex != -1) {
-                            String value = cursor.getString(columnIndex);
-                            callLog.putString(columnName, value != null ? value : ""); // Use empty string for null values
-                        }
-                    }
+    @ReactMethod
+    public void setStatsEnabled(boolean enabled) {
+        metrics.setEnabled(enabled);
+    }
+
+    @ReactMethod
+    public void getStats(Promise promise) {
+        promise.resolve(metrics.stats());
+    }
+
+    @ReactMethod
+    public void getCacheStats(Promise promise) {
+        promise.resolve(cache.stats());
+    }
+
+    @ReactMethod
+    public void cancel(String requestId) {
+        executor.cancel(requestId);
+    }
 
-                    //Available columns
-                    // callLog.putLong("callId", cursor.getLong(cursor.getColumnIndex(CallLog.Calls._ID)));
-                    // callLog.putInt("isAddedForAllUsers", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.ADD_FOR_ALL_USERS))); //7
-                    // callLog.putInt("blockReason", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON)));
-                    // callLog.putString("callScreeningAppName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CALL_SCREENING_APP_NAME)));
-                    // callLog.putString("callScreeningComponentName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CALL_SCREENING_COMPONENT_NAME)));
-                    // callLog.putString("composerPhotoUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.COMPOSER_PHOTO_URI)));
-                    // callLog.putString("countryIso", cursor.getString(cursor.getColumnIndex(CallLog.Calls.COUNTRY_ISO)));
-                    // callLog.putString("data1", cursor.getString(cursor.getColumnIndex(CallLog.Calls.DATA1))); //7
-                    // callLog.putString("data2", cursor.getString(cursor.getColumnIndex(CallLog.Calls.DATA2)));//7
-                    // callLog.putString("data3", cursor.getString(cursor.getColumnIndex(CallLog.Calls.DATA3)));//7
-                    // callLog.putString("data4", cursor.getString(cursor.getColumnIndex(CallLog.Calls.DATA4)));//7
-                    // callLog.putString("dataUsage", cursor.getString(cursor.getColumnIndex(CallLog.Calls.DATA_USAGE)));
-                    // callLog.putInt("callFeatures", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES)));
-                    // callLog.putString("formattedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.FORMATTED_NUMBER)));
-                    // callLog.putString("geocodedLocation", cursor.getString(cursor.getColumnIndex(CallLog.Calls.GEOCODED_LOCATION)));
-                    // callLog.putInt("isMigrationPending", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.IS_CALL_LOG_PHONE_ACCOUNT_MIGRATION_PENDING)));//7
-                    // callLog.putInt("isRead", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.IS_READ)));
-                    // callLog.putLong("lastModified", cursor.getLong(cursor.getColumnIndex(CallLog.Calls.LAST_MODIFIED)));
-                    // callLog.putString("location", cursor.getString(cursor.getColumnIndex(CallLog.Calls.LOCATION)));
-                    // callLog.putString("lookupUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.LOOKUP_URI)));//7
-                    // callLog.putString("matchedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.MATCHED_NUMBER)));//7
-                    // callLog.putInt("missedReason", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.MISSED_REASON)));
-                    // callLog.putString("contactName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.NAME)));//7
-                    // callLog.putInt("isNew", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.NEW)));
-                    // callLog.putString("normalizedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.NORMALIZED_NUMBER)));//7
-                    // callLog.putString("phoneNumberLabel", cursor.getString(cursor.getColumnIndex(CallLog.Calls.NUMBER_LABEL)));//7
-                    // callLog.putInt("phoneNumberType", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.NUMBER_TYPE)));//7
-                    // callLog.putString("phoneAccountAddress", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PHONE_ACCOUNT_ADDRESS)));//7
-                    // callLog.putInt("isPhoneAccountHidden", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.PHONE_ACCOUNT_HIDDEN)));//7
-                    // callLog.putLong("photoId", cursor.getLong(cursor.getColumnIndex(CallLog.Calls.PHOTO_ID)));//7
-                    // callLog.putString("photoUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PHOTO_URI)));//7
-                    // callLog.putString("postDialDigits", cursor.getString(cursor.getColumnIndex(CallLog.Calls.POST_DIAL_DIGITS)));
-                    // callLog.putInt("presentation", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.PRESENTATION)));//7
-                    // callLog.putInt("priority", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.PRIORITY)));
-                    // callLog.putString("callSubject", cursor.getString(cursor.getColumnIndex(CallLog.Calls.SUBJECT)));
-                    // callLog.putString("subscriptionComponentName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.SUBSCRIPTION_COMPONENT_NAME)));//7
-                    // callLog.putString("subscriptionId", cursor.getString(cursor.getColumnIndex(CallLog.Calls.SUBSCRIPTION_ID)));//7
-                    // callLog.putString("transcription", cursor.getString(cursor.getColumnIndex(CallLog.Calls.TRANSCRIPTION)));
-                    // callLog.putInt("transcriptionState", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.TRANSCRIPTION_STATE)));//7
-                    // callLog.putString("viaNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.VIA_NUMBER)));
-                    // callLog.putString("voicemailUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.VOICEMAIL_URI)));
-
-
-                    
-                    // API LEVEL >= 29
-                    // callLog.putString("assertedDisplayName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.ASSERTED_DISPLAY_NAME)));
-                    // callLog.putLong("autoMissedEmergencyCall", cursor.getLong(cursor.getColumnIndex(CallLog.Calls.AUTO_MISSED_EMERGENCY_CALL)));
-                    // callLog.putInt("autoMissedMaximumDialing", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.AUTO_MISSED_MAXIMUM_DIALING)));
-                    // callLog.putInt("autoMissedMaximumRinging", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.AUTO_MISSED_MAXIMUM_RINGING)));
-                    // callLog.putString("composerPhotoUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.COMPOSER_PHOTO_URI)));
-                    // callLog.putInt("isBusinessCall", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.IS_BUSINESS_CALL)));
-                    // callLog.putString("location", cursor.getString(cursor.getColumnIndex(CallLog.Calls.LOCATION)));
-                    // callLog.putInt("missedReason", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.MISSED_REASON)));
-                    // callLog.putInt("missedReasonNotMissed", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.MISSED_REASON_NOT_MISSED)));
-                    // callLog.putString("presentationUnavailable", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PRESENTATION_UNAVAILABLE)));
-                    // callLog.putInt("priority", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.PRIORITY)));
-                    // callLog.putInt("priorityNormal", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.PRIORITY_NORMAL)));
-                    // callLog.putInt("priorityUrgent", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.PRIORITY_URGENT)));
-                    // callLog.putString("subject", cursor.getString(cursor.getColumnIndex(CallLog.Calls.SUBJECT)));
-                    // callLog.putInt("userMissedCallFiltersTimeout", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_CALL_FILTERS_TIMEOUT)));
-                    // callLog.putInt("userMissedCallScreeningServiceSilenced", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_CALL_SCREENING_SERVICE_SILENCED)));
-                    // callLog.putInt("userMissedDndMode", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_DND_MODE)));
-                    // callLog.putInt("userMissedLowRingVolume", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_LOW_RING_VOLUME)));
-                    // callLog.putInt("userMissedNoAnswer", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_NO_ANSWER)));
-                    // callLog.putInt("userMissedNoVibrate", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_NO_VIBRATE)));
-                    // callLog.putInt("userMissedShortRing", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.USER_MISSED_SHORT_RING)));
-                    // callLog.putInt("featuresAssistedDialingUsed", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_ASSISTED_DIALING_USED)));
-                    // callLog.putInt("featuresVolte", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_VOLTE)));
-                    
-
-                    
-                    // Add the additional fields based on the CallLog.Calls constants
-                    // callLog.putString("blockReason", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON)));
-                    // callLog.putString("cachedFormattedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_FORMATTED_NUMBER)));
-                    // callLog.putString("extraCallTypeFilter", cursor.getString(cursor.getColumnIndex(CallLog.Calls.EXTRA_CALL_TYPE_FILTER)));
-                    // callLog.putString("cachedLookupUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_LOOKUP_URI)));
-                    // callLog.putString("cachedMatchedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_MATCHED_NUMBER)));
-                    // callLog.putString("cachedNormalizedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_NORMALIZED_NUMBER)));
-                    // callLog.putString("cachedNumberLabel", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_NUMBER_LABEL)));
-                    // callLog.putString("cachedNumberType", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_NUMBER_TYPE)));
-                    // callLog.putString("cachedPhotoId", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_PHOTO_ID)));
-                    // callLog.putString("cachedPhotoUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CACHED_PHOTO_URI)));
-                    // callLog.putString("callScreeningAppName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CALL_SCREENING_APP_NAME)));
-                    // callLog.putString("callScreeningComponentName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CALL_SCREENING_COMPONENT_NAME)));
-                    // callLog.putString("contentItemType", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CONTENT_ITEM_TYPE)));
-                    // callLog.putString("contentType", cursor.getString(cursor.getColumnIndex(CallLog.Calls.CONTENT_TYPE)));
-                    // callLog.putString("countryIso", cursor.getString(cursor.getColumnIndex(CallLog.Calls.COUNTRY_ISO)));
-                    // callLog.putString("lastModified", cursor.getString(cursor.getColumnIndex(CallLog.Calls.LAST_MODIFIED)));
-                    // callLog.putString("limitParamKey", cursor.getString(cursor.getColumnIndex(CallLog.Calls.LIMIT_PARAM_KEY)));
-                    // callLog.putString("location", cursor.getString(cursor.getColumnIndex(CallLog.Calls.LOCATION)));
-                    // callLog.putString("numberPresentation", cursor.getString(cursor.getColumnIndex(CallLog.Calls.NUMBER_PRESENTATION)));
-                    // callLog.putString("offsetParamKey", cursor.getString(cursor.getColumnIndex(CallLog.Calls.OFFSET_PARAM_KEY)));
-                    // callLog.putString("phoneAccountComponentName", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PHONE_ACCOUNT_COMPONENT_NAME)));
-                    // callLog.putString("phoneAccountId", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PHONE_ACCOUNT_ID)));
-                    // callLog.putString("postDialDigits", cursor.getString(cursor.getColumnIndex(CallLog.Calls.POST_DIAL_DIGITS)));
-                    // callLog.putString("transcription", cursor.getString(cursor.getColumnIndex(CallLog.Calls.TRANSCRIPTION)));
-                    // callLog.putString("viaNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.VIA_NUMBER)));
-                    // callLog.putString("voicemailUri", cursor.getString(cursor.getColumnIndex(CallLog.Calls.VOICEMAIL_URI)));
-                    // callLog.putString("geocodedLocation", cursor.getString(cursor.getColumnIndex(CallLog.Calls.GEOCODED_LOCATION)));
-                    
-                    
-                    // try first all strings, then all int and long
-                //     callLog.putInt("blockedType", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.BLOCKED_TYPE))); // throws error
-                // int cannot be converted to String
-                // callLog.putString("outgoingType", cursor.getString(cursor.getColumnIndex(CallLog.Calls.OUTGOING_TYPE)));
-                // callLog.putString("presentationAllowed", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PRESENTATION_ALLOWED)));
-                // callLog.putString("presentationPayphone", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PRESENTATION_PAYPHONE)));
-                // callLog.putString("presentationRestricted", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PRESENTATION_RESTRICTED)));
-                // callLog.putString("presentationUnknown", cursor.getString(cursor.getColumnIndex(CallLog.Calls.PRESENTATION_UNKNOWN)));
-                // callLog.putString("voicemailType", cursor.getString(cursor.getColumnIndex(CallLog.Calls.VOICEMAIL_TYPE)));
-                // callLog.putString("blockReasonBlockedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_BLOCKED_NUMBER)));
-                // callLog.putString("blockReasonCallScreeningService", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_CALL_SCREENING_SERVICE)));
-                // callLog.putString("blockReasonDirectToVoicemail", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_DIRECT_TO_VOICEMAIL)));
-                // callLog.putString("blockReasonNotBlocked", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_NOT_BLOCKED)));
-                // callLog.putString("blockReasonNotInContacts", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_NOT_IN_CONTACTS)));
-                // callLog.putString("blockReasonPayPhone", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_PAY_PHONE)));
-                // callLog.putString("blockReasonRestrictedNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_RESTRICTED_NUMBER)));
-                // callLog.putString("blockReasonUnknownNumber", cursor.getString(cursor.getColumnIndex(CallLog.Calls.BLOCK_REASON_UNKNOWN_NUMBER)));
-                // callLog.putInt("dataUsage", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.DATA_USAGE)));
-                // callLog.putInt("defaultSortOrder", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.DEFAULT_SORT_ORDER)));
-                // callLog.putInt("features", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES)));
-                // callLog.putInt("isRead", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.IS_READ)));
-                // callLog.putInt("missedReason", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.MISSED_REASON)));
-                // callLog.putInt("newField", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.NEW)));
-                //     callLog.putInt("featuresHdCall", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_HD_CALL)));
-                //     callLog.putInt("featuresPulledExternally", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_PULLED_EXTERNALLY)));
-                //     callLog.putInt("featuresRtt", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_RTT)));
-                //     callLog.putInt("featuresVideo", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_VIDEO)));
-                //     callLog.putInt("featuresWifi", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.FEATURES_WIFI)));
-                //     callLog.putInt("incomingType", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.INCOMING_TYPE)));
-                //     callLog.putInt("missedType", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.MISSED_TYPE)));
-                //     callLog.putInt("rejectedType", cursor.getInt(cursor.getColumnIndex(CallLog.Calls.REJECTED_TYPE)));
-                    
-                    result.pushMap(callLog);
-                    callLogCount++;
+    @ReactMethod
+    public void startStream(final String streamId, final int limit, int batchSize, @Nullable ReadableMap filter) {
+        final CallLogFilter callLogFilter;
+        try {
+            callLogFilter = CallLogFilter.from(filter).requireUngrouped("stream");
+        } catch (JSONException e) {
+            emitStreamError(streamId, e);
+            return;
+        }
+
+        final CallLogStream stream = new CallLogStream(streamId, limit, Math.max(batchSize, 1));
+        CallLogStream previous = streams.put(streamId, stream);
+        if (previous != null) {
+            // Ids only repeat once JS reloaded and restarted its counter, so nobody waits for
+            // the old stream. It is closed without an end event, which the new stream's
+            // listeners would take as their own.
+            closeStream(previous, true);
+        }
+
+        // One trace spans every batch of the stream and is recorded when it closes.
+        stream.request.trace = metrics.start("stream", "stream|" + limit + "|" + callLogFilter.key());
+        executeStreamWork(stream, new Runnable() {
+            @Override
+            public void run() {
+                CallLogProjection projection = projectionFor(callLogFilter);
+                CallLogQuery query = CallLogQuery.plan(callLogFilter, projection, limit, numberIndex);
+                Cursor cursor = execute(query, stream.request);
+
+                if (cursor == null) {
+                    streams.remove(streamId, stream);
+                    closeStream(stream, false);
+                    emitStreamEnd(streamId, 0, false);
+                    return;
+                }
+
+                projection.bind(cursor);
+                query.bind(cursor);
+                if (stream.open(cursor, query, projection)) {
+                    emitNextBatch(stream);
                 }
             }
+        });
+    }
 
-            cursor.close();
+    @ReactMethod
+    public void ackStreamBatch(String streamId) {
+        final CallLogStream stream = streams.get(streamId);
+        if (stream != null) {
+            executeStreamWork(stream, new Runnable() {
+                @Override
+                public void run() {
+                    emitNextBatch(stream);
+                }
+            });
+        }
+    }
 
-            promise.resolve(result);
-        } catch (JSONException e) {
+    @ReactMethod
+    public void cancelStream(String streamId) {
+        CallLogStream stream = streams.remove(streamId);
+        if (stream != null) {
+            closeStream(stream, true);
+            emitStreamEnd(streamId, stream.count(), true);
+        }
+    }
+
+    @ReactMethod
+    public void subscribe(@Nullable String watermark, @Nullable ReadableMap filter, @Nullable ReadableMap options,
+                          Promise promise) {
+        final CallLogFilter callLogFilter;
+        final CallLogWatermark since;
+        try {
+            callLogFilter = CallLogFilter.from(filter).requireUngrouped("subscribe");
+            if (callLogFilter.columnar) {
+                throw new JSONException("subscribe does not support the columnar format");
+            }
+            since = watermark != null ? CallLogWatermark.decode(watermark) : null;
+        } catch (JSONException | IllegalArgumentException e) {
             promise.reject(e);
+            return;
+        }
+        boolean trackDeletions = options != null && options.hasKey("trackDeletions")
+                && !options.isNull("trackDeletions") && options.getBoolean("trackDeletions");
+
+        unsubscribe();
+        changeFeed = new CallLogChangeFeed(this.context.getContentResolver(), executor, callLogFilter,
+                projectionFor(callLogFilter), numberIndex, metrics, trackDeletions, new CallLogChangeFeed.Listener() {
+                    @Override
+                    public void onChanges(WritableMap changes) {
+                        emit(CHANGES_EVENT, changes);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        WritableMap event = Arguments.createMap();
+                        event.putString("message", e.getMessage());
+                        emit(CHANGES_ERROR_EVENT, event);
+                    }
+                });
+        try {
+            changeFeed.start(since);
+        } catch (RejectedExecutionException e) {
+            unsubscribe();
+            promise.reject(CallLogExecutor.E_BUSY, "Too many call log queries in flight", e);
+            return;
+        }
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void unsubscribe() {
+        if (changeFeed != null) {
+            changeFeed.stop();
+            changeFeed = null;
+        }
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        unsubscribe();
+        for (CallLogStream stream : streams.values()) {
+            stream.cancel();
+        }
+        streams.clear();
+        executor.shutdown();
+        cache.close();
+        numberIndex.close();
+        searchIndex.close();
+        contacts.close();
+    }
+
+    private void executeStreamWork(final CallLogStream stream, final Runnable work) {
+        Runnable guarded = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    work.run();
+                } catch (OperationCanceledException e) {
+                    // cancelStream already reported the end of the stream.
+                } catch (RuntimeException e) {
+                    streams.remove(stream.id, stream);
+                    closeStream(stream, false);
+                    emitStreamError(stream.id, e);
+                }
+            }
+        };
+
+        try {
+            executor.execute(guarded);
+        } catch (RejectedExecutionException e) {
+            streams.remove(stream.id, stream);
+            closeStream(stream, false);
+            emitStreamError(stream.id, e);
+        }
+    }
+
+    /**
+     * Closes or cancels the stream and, the first time, records its trace.
+     */
+    private void closeStream(CallLogStream stream, boolean cancel) {
+        if (cancel ? stream.cancel() : stream.close()) {
+            metrics.record(stream.request.trace);
+        }
+    }
+
+    private void emitNextBatch(CallLogStream stream) {
+        CallLogRows items;
+        int requested;
+        int read;
+        synchronized (stream) {
+            if (stream.isClosed()) {
+                return;
+            }
+            items = new CallLogRows(stream.projection());
+            requested = stream.nextBatchSize();
+            read = requested > 0 ? readCallLogs(stream.cursor(), stream.query(), requested, items, stream.request) : 0;
+            stream.advance(read);
+        }
+
+        if (stream.request.isCancelled()) {
+            return;
         }
+
+        if (read > 0) {
+            WritableMap event = Arguments.createMap();
+            event.putString("streamId", stream.id);
+            event.putArray("items", items.result());
+            emit(STREAM_BATCH_EVENT, event);
+        }
+
+        // A short batch means the cursor or the limit is exhausted.
+        if (read < requested || requested == 0) {
+            streams.remove(stream.id, stream);
+            closeStream(stream, false);
+            emitStreamEnd(stream.id, stream.count(), false);
+        }
+    }
+
+    private void emitStreamEnd(String streamId, int count, boolean cancelled) {
+        WritableMap event = Arguments.createMap();
+        event.putString("streamId", streamId);
+        event.putInt("count", count);
+        event.putBoolean("cancelled", cancelled);
+        emit(STREAM_END_EVENT, event);
+    }
+
+    private void emitStreamError(String streamId, Exception e) {
+        WritableMap event = Arguments.createMap();
+        event.putString("streamId", streamId);
+        event.putString("message", e.getMessage());
+        emit(STREAM_ERROR_EVENT, event);
+    }
+
+    private void emit(String eventName, WritableMap event) {
+        getReactApplicationContext()
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, event);
+    }
+
+    private int readCallLogs(Cursor cursor, CallLogQuery query, int limit, CallLogSink sink,
+                             CallLogRequest request) {
+        int callLogCount = 0;
+        int scannedCount = 0;
+        CallLogTrace trace = request.trace;
+        long started = trace.now();
+
+        while (this.shouldContinue(limit, callLogCount) && !request.isCancelled() && cursor.moveToNext()) {
+            scannedCount++;
+            // Timestamps and types are already applied by the provider.
+            boolean passesFilter = query.matches(cursor);
+
+            if (passesFilter) {
+                long decodeStarted = trace.now();
+                sink.add(cursor);
+                trace.decoded(decodeStarted);
+                callLogCount++;
+            }
+        }
+
+        trace.scanned(started, scannedCount, callLogCount);
+        return callLogCount;
+    }
+
+    /**
+     * Reads rows until the limit of groups is reached; a group is complete once a row with
+     * another number follows it.
+     */
+    private void readGroups(Cursor cursor, CallLogQuery query, int limit, CallLogGroups groups,
+                            CallLogRequest request) {
+        CallLogTrace trace = request.trace;
+        long started = trace.now();
+        int scannedCount = 0;
+
+        while (!request.isCancelled() && cursor.moveToNext()) {
+            scannedCount++;
+            if (!query.matches(cursor)) {
+                continue;
+            }
+            if (!groups.continuesGroup(cursor) && !this.shouldContinue(limit, groups.size())) {
+                break;
+            }
+            long decodeStarted = trace.now();
+            groups.add(cursor);
+            trace.decoded(decodeStarted);
+        }
+
+        trace.scanned(started, scannedCount, groups.size());
+    }
+
+    @Nullable
+    private Cursor execute(CallLogQuery query, CallLogRequest request) {
+        long started = request.trace.now();
+        Cursor cursor = query.execute(context.getContentResolver(), request);
+        request.trace.queried(started);
+        return cursor;
+    }
+
+    /**
+     * Runs the task with a trace of the request while metrics are enabled.
+     */
+    private CallLogExecutor.Task traced(final String method, final String key, final CallLogExecutor.Task task) {
+        return new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) throws Exception {
+                request.trace = metrics.start(method, key);
+                try {
+                    return task.run(request);
+                } finally {
+                    metrics.record(request.trace);
+                }
+            }
+        };
+    }
+
+    private static int resultLength(Object result) {
+        if (result instanceof ReadableArray) {
+            return ((ReadableArray) result).size();
+        }
+        if (result instanceof ReadableMap && ((ReadableMap) result).hasKey("length")) {
+            return ((ReadableMap) result).getInt("length");
+        }
+        return 0;
+    }
+
+    private CallLogProjection projectionFor(CallLogFilter filter) {
+        return CallLogProjection.of(filter.fields, filter.enrichContacts ? contacts : null);
+    }
+
+    private static CallLogSink newSink(CallLogFilter filter, CallLogProjection projection) {
+        return filter.columnar ? new CallLogColumns(projection) : new CallLogRows(projection);
+    }
+
+    private boolean hasNextMatch(Cursor cursor, CallLogQuery query) {
+        while (cursor.moveToNext()) {
+            if (query.matches(cursor)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static String[] toStringArray(JSONArray array) {
@@ -290,27 +747,6 @@ public class CallLogModule extends ReactContextBaseJavaModule {
         return arr;
     }
 
-    private String resolveCallType(int callTypeCode) {
-        switch (callTypeCode) {
-            case Calls.OUTGOING_TYPE:
-                return "OUTGOING";
-            case Calls.INCOMING_TYPE:
-                return "INCOMING";
-            case Calls.MISSED_TYPE:
-                return "MISSED";
-            case Calls.VOICEMAIL_TYPE:
-                return "VOICEMAIL";
-            case Calls.REJECTED_TYPE:
-                return "REJECTED";
-            case Calls.BLOCKED_TYPE:
-                return "BLOCKED";
-            case Calls.ANSWERED_EXTERNALLY_TYPE:
-                return "ANSWERED_EXTERNALLY";
-            default:
-                return "UNKNOWN";
-        }
-    }
-
     private boolean shouldContinue(int limit, int count) {
         return limit < 0 || count < limit;
     }
@@ -0,0 +1,257 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CallLog.Calls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index from canonical phone number digits to call log row ids, so per-contact
+ * queries can select rows by _ID instead of scanning the whole log. It is built on first use.
+ * Every lookup then reads the rows added since the previous one, which only walks the end of
+ * the _ID key. Once the call log reports a change, the lookup also re-keys rows whose
+ * LAST_MODIFIED is past the last one seen and drops the ids of deleted rows.
+ */
+final class CallLogNumberIndex {
+
+    private static final class Ids {
+        long[] values = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = id;
+        }
+
+        void remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == id) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final ContentObserver observer;
+
+    private final Map<String, Ids> idsByDigits = new HashMap<>();
+    private final Map<String, Set<String>> digitsByMatchKey = new HashMap<>();
+    // Every indexed row in ascending _ID order with its digits, empty when it has none, so a
+    // changed or deleted row can be found in the ids of its previous digits.
+    private long[] rowIds = new long[16];
+    private String[] rowDigits = new String[16];
+    private int rows;
+    private long maxId = -1;
+    private long maxLastModified;
+    private boolean built;
+    private volatile boolean stale;
+
+    CallLogNumberIndex(ContentResolver resolver) {
+        this.resolver = resolver;
+        this.observer = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                stale = true;
+            }
+        };
+    }
+
+    /**
+     * Ids of every row whose number matches one of the given numbers, in no particular order.
+     */
+    synchronized long[] lookup(Collection<String> numbers) {
+        ensureCurrent();
+
+        Ids result = new Ids();
+        for (String number : numbers) {
+            String digits = CallLogNumbers.digits(number);
+            if (digits.isEmpty()) {
+                continue;
+            }
+            Set<String> group = digitsByMatchKey.get(CallLogNumbers.matchKey(digits));
+            if (group == null) {
+                continue;
+            }
+            for (String candidate : group) {
+                if (CallLogNumbers.sameNumber(candidate, digits)) {
+                    Ids ids = idsByDigits.get(candidate);
+                    for (int i = 0; i < ids.size; i++) {
+                        result.add(ids.values[i]);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(result.values, result.size);
+    }
+
+    synchronized void close() {
+        if (built) {
+            resolver.unregisterContentObserver(observer);
+        }
+    }
+
+    private void ensureCurrent() {
+        if (!built) {
+            resolver.registerContentObserver(Calls.CONTENT_URI, true, observer);
+            built = true;
+        }
+        // Clear first so a notification arriving during the scan triggers another catch-up.
+        boolean changed = stale;
+        stale = false;
+
+        try {
+            readRows(changed && hasLastModified());
+            // Rows added above are counted too, so fewer rows than indexed means deletions.
+            if (changed && !CallLogQuery.hasAtLeast(resolver, rows)) {
+                removeDeletedRows();
+            }
+        } catch (RuntimeException e) {
+            stale |= changed;
+            throw e;
+        }
+    }
+
+    /**
+     * Indexes the rows added since the last call and, when asked to, re-keys the rows
+     * modified since then.
+     */
+    private void readRows(boolean modified) {
+        List<String> columns = new ArrayList<>(Arrays.asList(Calls._ID, Calls.NUMBER));
+        String selection = Calls._ID + " > ?";
+        String[] selectionArgs = { Long.toString(maxId) };
+        if (hasLastModified()) {
+            columns.add(Calls.LAST_MODIFIED);
+        }
+        if (modified) {
+            selection += " OR " + Calls.LAST_MODIFIED + " > ?";
+            selectionArgs = new String[] { Long.toString(maxId), Long.toString(maxLastModified) };
+        }
+        if (CallLogNumbers.hasNormalizedNumber()) {
+            columns.add(Calls.CACHED_NORMALIZED_NUMBER);
+        }
+
+        Cursor cursor = resolver.query(Calls.CONTENT_URI, columns.toArray(new String[0]), selection, selectionArgs,
+                Calls._ID + " ASC");
+        if (cursor == null) {
+            stale = modified;
+            return;
+        }
+
+        try {
+            int lastModifiedIndex = cursor.getColumnIndex(Calls.LAST_MODIFIED);
+            int normalizedIndex = cursor.getColumnIndex(Calls.CACHED_NORMALIZED_NUMBER);
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                String normalized = normalizedIndex != -1 ? cursor.getString(normalizedIndex) : null;
+                String digits = CallLogNumbers.digits(normalized != null ? normalized : cursor.getString(1));
+                if (id > maxId) {
+                    addRow(id, digits);
+                    maxId = id;
+                } else {
+                    rekey(id, digits);
+                }
+                if (lastModifiedIndex != -1) {
+                    maxLastModified = Math.max(maxLastModified, cursor.getLong(lastModifiedIndex));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void addRow(long id, String digits) {
+        if (rows == rowIds.length) {
+            rowIds = Arrays.copyOf(rowIds, rows * 2);
+            rowDigits = Arrays.copyOf(rowDigits, rows * 2);
+        }
+        rowIds[rows] = id;
+        rowDigits[rows] = digits;
+        rows++;
+        addId(digits, id);
+    }
+
+    private void rekey(long id, String digits) {
+        int row = Arrays.binarySearch(rowIds, 0, rows, id);
+        if (row < 0 || rowDigits[row].equals(digits)) {
+            return;
+        }
+        removeId(rowDigits[row], id);
+        rowDigits[row] = digits;
+        addId(digits, id);
+    }
+
+    private void addId(String digits, long id) {
+        if (digits.isEmpty()) {
+            return;
+        }
+        Ids ids = idsByDigits.get(digits);
+        if (ids == null) {
+            ids = new Ids();
+            idsByDigits.put(digits, ids);
+            CallLogNumbers.add(digitsByMatchKey, digits);
+        }
+        ids.add(id);
+    }
+
+    private void removeId(String digits, long id) {
+        Ids ids = idsByDigits.get(digits);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+
+    /**
+     * Drops the rows whose ids are no longer in the call log. The provider keeps no record of
+     * deleted rows, so this reads the whole _ID column.
+     */
+    private void removeDeletedRows() {
+        Cursor cursor = resolver.query(Calls.CONTENT_URI, new String[] { Calls._ID }, null, null,
+                Calls._ID + " ASC");
+        if (cursor == null) {
+            return;
+        }
+
+        int kept = 0;
+        int row = 0;
+        try {
+            while (cursor.moveToNext() && row < rows) {
+                long id = cursor.getLong(0);
+                for (; row < rows && rowIds[row] < id; row++) {
+                    removeId(rowDigits[row], rowIds[row]);
+                }
+                if (row < rows && rowIds[row] == id) {
+                    rowIds[kept] = id;
+                    rowDigits[kept] = rowDigits[row];
+                    kept++;
+                    row++;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        for (; row < rows; row++) {
+            removeId(rowDigits[row], rowIds[row]);
+        }
+        Arrays.fill(rowDigits, kept, rows, null);
+        rows = kept;
+    }
+
+    private static boolean hasLastModified() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+    }
+}
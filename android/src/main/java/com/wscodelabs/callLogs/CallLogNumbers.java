@@ -0,0 +1,117 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+import android.os.Build;
+import android.provider.CallLog.Calls;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Phone number matching that ignores formatting. Numbers are reduced to their digits and
+ * two numbers match when one ends with the other and they share at least the last
+ * {@link #MIN_MATCH} digits, so "+1 555-0100", "5550100" and "(555) 0100" are the same number.
+ */
+final class CallLogNumbers {
+
+    // Same minimum as the platform's caller-id lookups.
+    static final int MIN_MATCH = 7;
+
+    // Canonical digits of the wanted numbers, grouped by match key.
+    private final Map<String, Set<String>> wanted = new HashMap<>();
+
+    private int numberIndex = -1;
+    private int normalizedNumberIndex = -1;
+
+    CallLogNumbers(Collection<String> numbers) {
+        for (String number : numbers) {
+            String digits = digits(number);
+            if (!digits.isEmpty()) {
+                add(wanted, digits);
+            }
+        }
+    }
+
+    /**
+     * Columns that {@link #matches(Cursor)} reads.
+     */
+    static String[] columns() {
+        return hasNormalizedNumber()
+                ? new String[] { Calls.NUMBER, Calls.CACHED_NORMALIZED_NUMBER }
+                : new String[] { Calls.NUMBER };
+    }
+
+    void bind(Cursor cursor) {
+        numberIndex = cursor.getColumnIndex(Calls.NUMBER);
+        normalizedNumberIndex = hasNormalizedNumber() ? cursor.getColumnIndex(Calls.CACHED_NORMALIZED_NUMBER) : -1;
+    }
+
+    boolean matches(Cursor cursor) {
+        String normalized = normalizedNumberIndex != -1 ? cursor.getString(normalizedNumberIndex) : null;
+        return contains(wanted, digits(normalized != null ? normalized : cursor.getString(numberIndex)));
+    }
+
+    /**
+     * The digits of a number, which serve as its canonical form. E.164 numbers from the
+     * provider's NORMALIZED_NUMBER column keep their country code this way.
+     */
+    static String digits(@Nullable String number) {
+        if (number == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    static String matchKey(String digits) {
+        return digits.length() <= MIN_MATCH ? digits : digits.substring(digits.length() - MIN_MATCH);
+    }
+
+    static boolean sameNumber(String a, String b) {
+        if (a.length() < MIN_MATCH || b.length() < MIN_MATCH) {
+            return a.equals(b);
+        }
+        return a.length() >= b.length() ? a.endsWith(b) : b.endsWith(a);
+    }
+
+    static void add(Map<String, Set<String>> byMatchKey, String digits) {
+        String key = matchKey(digits);
+        Set<String> group = byMatchKey.get(key);
+        if (group == null) {
+            group = new HashSet<>();
+            byMatchKey.put(key, group);
+        }
+        group.add(digits);
+    }
+
+    private static boolean contains(Map<String, Set<String>> byMatchKey, String digits) {
+        if (digits.isEmpty()) {
+            return false;
+        }
+        Set<String> group = byMatchKey.get(matchKey(digits));
+        if (group == null) {
+            return false;
+        }
+        for (String candidate : group) {
+            if (sameNumber(candidate, digits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean hasNormalizedNumber() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+}
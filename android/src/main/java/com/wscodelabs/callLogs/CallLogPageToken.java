@@ -0,0 +1,46 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+/**
+ * Continuation token for loadPage: the (DATE, _ID) of the last call log on a page. The
+ * next page starts strictly after it in (DATE DESC, _ID DESC) order, so each page is a
+ * bounded range query no matter how deep the caller has scrolled.
+ */
+final class CallLogPageToken {
+
+    private static final String SEPARATOR = ":";
+
+    final long date;
+    final long id;
+
+    CallLogPageToken(long date, long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    static CallLogPageToken at(Cursor cursor) {
+        return new CallLogPageToken(
+                cursor.getLong(cursor.getColumnIndexOrThrow(Calls.DATE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(Calls._ID)));
+    }
+
+    static CallLogPageToken decode(String token) {
+        int separator = token.indexOf(SEPARATOR);
+        if (separator == -1) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        try {
+            return new CallLogPageToken(
+                    Long.parseLong(token.substring(0, separator)),
+                    Long.parseLong(token.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+    }
+
+    String encode() {
+        return date + SEPARATOR + id;
+    }
+}
@@ -0,0 +1,464 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Typed decoder for the keys emitted for every call log. A key is either a provider column
+ * or one of the derived keys below. Column indices and value types are resolved once per
+ * query in {@link #bind(Cursor)}, so decoding a row only reads the requested columns with
+ * the matching typed getter.
+ */
+final class CallLogProjection {
+
+    static final String PHONE_NUMBER = "phoneNumber";
+    static final String DATE_TIME = "dateTime";
+    static final String NORMALIZED_TYPE = "normalizedType";
+    static final String TIMESTAMP = "timestamp";
+    static final String RAW_TYPE = "rawType";
+    // Emitted when contacts are enriched; resolved from the number through CallLogContacts.
+    static final String DISPLAY_NAME = "displayName";
+    static final String PHOTO_URI = "photoUri";
+    static final String CONTACT_ID = "contactId";
+
+    private static final int KIND_STRING = 0;
+    private static final int KIND_LONG = 1;
+    private static final int KIND_INT = 2;
+    private static final int KIND_DATE_TIME = 3;
+    private static final int KIND_NORMALIZED_TYPE = 4;
+    private static final int KIND_PHONE_NUMBER = 5;
+    private static final int KIND_DISPLAY_NAME = 6;
+    private static final int KIND_PHOTO_URI = 7;
+    private static final int KIND_CONTACT_ID = 8;
+
+    // Provider columns holding integers; everything else is read as a string.
+    private static final Set<String> LONG_COLUMNS = new HashSet<>(Arrays.asList(
+            Calls._ID, Calls.DATE, Calls.DURATION, Calls.LAST_MODIFIED, Calls.DATA_USAGE, Calls.CACHED_PHOTO_ID));
+    private static final Set<String> INT_COLUMNS = new HashSet<>(Arrays.asList(
+            Calls.TYPE, Calls.NEW, Calls.IS_READ, Calls.FEATURES, Calls.CACHED_NUMBER_TYPE, Calls.NUMBER_PRESENTATION));
+
+    // SimpleDateFormat is not thread-safe and the executor runs several queries at once.
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<>();
+    private static final ThreadLocal<Locale> DATE_FORMAT_LOCALE = new ThreadLocal<>();
+
+    // Requested keys in order, or null to emit the derived keys plus every column.
+    @Nullable private final List<String> fields;
+    @Nullable private final CallLogContacts contacts;
+
+    private String[] keys;
+    private int[] kinds;
+    private int[] indices;
+    private DateFormat dateFormat;
+    private final Date date = new Date();
+
+    // The contact of the last row looked up, shared by the contact keys of that row.
+    @Nullable private String contactNumber;
+    private CallLogContacts.Contact contact;
+
+    private CallLogProjection(@Nullable List<String> fields, @Nullable CallLogContacts contacts) {
+        this.fields = fields;
+        this.contacts = contacts;
+    }
+
+    static CallLogProjection of(@Nullable Set<String> fields) {
+        return of(fields, null);
+    }
+
+    /**
+     * A projection that also emits displayName, photoUri and contactId for every call log
+     * when contacts are given.
+     */
+    static CallLogProjection of(@Nullable Set<String> fields, @Nullable CallLogContacts contacts) {
+        return new CallLogProjection(fields == null ? null : new ArrayList<>(fields), contacts);
+    }
+
+    /**
+     * Returns the provider projection covering the requested keys plus the given extra
+     * columns, or null when every column is wanted.
+     */
+    @Nullable
+    String[] columns(String... extraColumns) {
+        if (fields == null) {
+            return null;
+        }
+
+        Set<String> columns = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (contacts == null || contactKindOf(field) == -1) {
+                columns.add(columnFor(field));
+            }
+        }
+        for (String column : extraColumns) {
+            columns.add(column);
+        }
+        if (contacts != null) {
+            columns.add(Calls.NUMBER);
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    void bind(Cursor cursor) {
+        List<String> names = new ArrayList<>();
+        if (fields == null) {
+            names.add(PHONE_NUMBER);
+            names.add(TIMESTAMP);
+            names.add(DATE_TIME);
+            names.add(NORMALIZED_TYPE);
+            names.add(RAW_TYPE);
+            for (String column : cursor.getColumnNames()) {
+                names.add(column);
+            }
+        } else {
+            names.addAll(fields);
+        }
+        if (contacts != null) {
+            for (String name : Arrays.asList(DISPLAY_NAME, PHOTO_URI, CONTACT_ID)) {
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+            }
+        }
+
+        keys = new String[names.size()];
+        kinds = new int[names.size()];
+        indices = new int[names.size()];
+        boolean formatsDates = false;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = names.get(i);
+            kinds[i] = contacts != null ? contactKindOf(keys[i]) : -1;
+            if (kinds[i] == -1) {
+                kinds[i] = kindOf(keys[i]);
+            }
+            indices[i] = cursor.getColumnIndex(isContactKind(kinds[i]) ? Calls.NUMBER : columnFor(keys[i]));
+            formatsDates |= kinds[i] == KIND_DATE_TIME;
+        }
+
+        dateFormat = formatsDates ? dateFormat() : null;
+    }
+
+    void write(Cursor cursor, WritableMap callLog) {
+        for (int i = 0; i < keys.length; i++) {
+            int index = indices[i];
+            if (index == -1) {
+                continue;
+            }
+
+            switch (kinds[i]) {
+                case KIND_LONG:
+                    if (cursor.isNull(index)) {
+                        callLog.putNull(keys[i]);
+                    } else {
+                        callLog.putDouble(keys[i], cursor.getLong(index));
+                    }
+                    break;
+                case KIND_INT:
+                    if (cursor.isNull(index)) {
+                        callLog.putNull(keys[i]);
+                    } else {
+                        callLog.putInt(keys[i], cursor.getInt(index));
+                    }
+                    break;
+                case KIND_DATE_TIME:
+                    date.setTime(cursor.getLong(index));
+                    callLog.putString(keys[i], dateFormat.format(date));
+                    break;
+                case KIND_NORMALIZED_TYPE:
+                    callLog.putString(keys[i], CallType.resolve(cursor.getInt(index)));
+                    break;
+                case KIND_PHONE_NUMBER:
+                    callLog.putString(keys[i], cursor.getString(index));
+                    break;
+                case KIND_CONTACT_ID:
+                    long contactId = contactFor(cursor, index).contactId;
+                    if (contactId == -1) {
+                        callLog.putNull(keys[i]);
+                    } else {
+                        callLog.putDouble(keys[i], contactId);
+                    }
+                    break;
+                case KIND_DISPLAY_NAME:
+                case KIND_PHOTO_URI:
+                    callLog.putString(keys[i], contactText(cursor, i, index));
+                    break;
+                default:
+                    String value = cursor.getString(index);
+                    callLog.putString(keys[i], value != null ? value : ""); // Use empty string for null values
+                    break;
+            }
+        }
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String key(int i) {
+        return keys[i];
+    }
+
+    boolean isBound(int i) {
+        return indices[i] != -1;
+    }
+
+    boolean isDictionaryEncoded(int i) {
+        return kinds[i] == KIND_NORMALIZED_TYPE || kinds[i] == KIND_PHONE_NUMBER
+                || (isContactKind(kinds[i]) && kinds[i] != KIND_CONTACT_ID);
+    }
+
+    /**
+     * Columnar counterpart of {@link #write(Cursor, WritableMap)}: appends the row's values
+     * to the per-key arrays of the given columns.
+     */
+    void append(Cursor cursor, CallLogColumns columns) {
+        for (int i = 0; i < keys.length; i++) {
+            int index = indices[i];
+            if (index == -1) {
+                continue;
+            }
+
+            WritableArray column = columns.column(i);
+            switch (kinds[i]) {
+                case KIND_LONG:
+                    if (cursor.isNull(index)) {
+                        column.pushNull();
+                    } else {
+                        column.pushDouble(cursor.getLong(index));
+                    }
+                    break;
+                case KIND_INT:
+                    if (cursor.isNull(index)) {
+                        column.pushNull();
+                    } else {
+                        column.pushInt(cursor.getInt(index));
+                    }
+                    break;
+                case KIND_DATE_TIME:
+                    date.setTime(cursor.getLong(index));
+                    column.pushString(dateFormat.format(date));
+                    break;
+                case KIND_NORMALIZED_TYPE:
+                    columns.pushEncoded(i, CallType.resolve(cursor.getInt(index)));
+                    break;
+                case KIND_PHONE_NUMBER:
+                    columns.pushEncoded(i, cursor.getString(index));
+                    break;
+                case KIND_CONTACT_ID:
+                    long contactId = contactFor(cursor, index).contactId;
+                    if (contactId == -1) {
+                        column.pushNull();
+                    } else {
+                        column.pushDouble(contactId);
+                    }
+                    break;
+                case KIND_DISPLAY_NAME:
+                case KIND_PHOTO_URI:
+                    columns.pushEncoded(i, contactText(cursor, i, index));
+                    break;
+                default:
+                    String value = cursor.getString(index);
+                    column.pushString(value != null ? value : "");
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Appends the row's value for the given key as a JSON literal, or as a CSV field when
+     * {@code json} is false. Used by exports, which never build a WritableMap.
+     */
+    void appendText(Cursor cursor, int i, StringBuilder out, boolean json) {
+        int index = indices[i];
+        switch (kinds[i]) {
+            case KIND_LONG:
+            case KIND_INT:
+                if (index == -1 || cursor.isNull(index)) {
+                    out.append(json ? "null" : "");
+                } else {
+                    out.append(cursor.getLong(index));
+                }
+                return;
+            case KIND_CONTACT_ID:
+                long contactId = index == -1 ? -1 : contactFor(cursor, index).contactId;
+                if (contactId == -1) {
+                    out.append(json ? "null" : "");
+                } else {
+                    out.append(contactId);
+                }
+                return;
+            default:
+                String value = index == -1 ? null : text(cursor, i, index);
+                if (value == null) {
+                    out.append(json ? "null" : "");
+                } else if (json) {
+                    appendJsonString(value, out);
+                } else {
+                    appendCsvField(value, out);
+                }
+        }
+    }
+
+    @Nullable
+    private String text(Cursor cursor, int i, int index) {
+        switch (kinds[i]) {
+            case KIND_DATE_TIME:
+                date.setTime(cursor.getLong(index));
+                return dateFormat.format(date);
+            case KIND_NORMALIZED_TYPE:
+                return CallType.resolve(cursor.getInt(index));
+            case KIND_DISPLAY_NAME:
+            case KIND_PHOTO_URI:
+                return contactText(cursor, i, index);
+            default:
+                return cursor.getString(index);
+        }
+    }
+
+    @Nullable
+    private String contactText(Cursor cursor, int i, int index) {
+        CallLogContacts.Contact contact = contactFor(cursor, index);
+        return kinds[i] == KIND_DISPLAY_NAME ? contact.displayName : contact.photoUri;
+    }
+
+    private CallLogContacts.Contact contactFor(Cursor cursor, int numberIndex) {
+        String number = cursor.getString(numberIndex);
+        if (contact == null || contactNumber == null || !contactNumber.equals(number)) {
+            contact = contacts.lookup(number);
+            contactNumber = number;
+        }
+        return contact;
+    }
+
+    static void appendJsonString(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    static void appendCsvField(String value, StringBuilder out) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static DateFormat dateFormat() {
+        Locale locale = Locale.getDefault();
+        DateFormat dateFormat = DATE_FORMAT.get();
+        if (dateFormat == null || !locale.equals(DATE_FORMAT_LOCALE.get())) {
+            dateFormat = SimpleDateFormat.getDateTimeInstance(SimpleDateFormat.MEDIUM, SimpleDateFormat.MEDIUM);
+            DATE_FORMAT.set(dateFormat);
+            DATE_FORMAT_LOCALE.set(locale);
+        }
+        return dateFormat;
+    }
+
+    private static boolean isContactKind(int kind) {
+        return kind == KIND_DISPLAY_NAME || kind == KIND_PHOTO_URI || kind == KIND_CONTACT_ID;
+    }
+
+    private static int contactKindOf(String key) {
+        switch (key) {
+            case DISPLAY_NAME:
+                return KIND_DISPLAY_NAME;
+            case PHOTO_URI:
+                return KIND_PHOTO_URI;
+            case CONTACT_ID:
+                return KIND_CONTACT_ID;
+            default:
+                return -1;
+        }
+    }
+
+    private static int kindOf(String key) {
+        switch (key) {
+            case DATE_TIME:
+                return KIND_DATE_TIME;
+            case NORMALIZED_TYPE:
+                return KIND_NORMALIZED_TYPE;
+            case TIMESTAMP:
+                return KIND_LONG;
+            case RAW_TYPE:
+                return KIND_INT;
+            case PHONE_NUMBER:
+                return KIND_PHONE_NUMBER;
+            default:
+                if (LONG_COLUMNS.contains(key)) {
+                    return KIND_LONG;
+                }
+                if (INT_COLUMNS.contains(key)) {
+                    return KIND_INT;
+                }
+                return KIND_STRING;
+        }
+    }
+
+    private static String columnFor(String key) {
+        switch (key) {
+            case PHONE_NUMBER:
+                return Calls.NUMBER;
+            case DATE_TIME:
+            case TIMESTAMP:
+                return Calls.DATE;
+            case NORMALIZED_TYPE:
+            case RAW_TYPE:
+                return Calls.TYPE;
+            default:
+                return key;
+        }
+    }
+}
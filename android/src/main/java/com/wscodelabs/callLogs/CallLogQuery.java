@@ -0,0 +1,268 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CallLog.Calls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Turns a {@link CallLogFilter} into a provider query. Everything SQLite can evaluate is
+ * sent as a parameterized selection so the provider only returns matching rows; whatever
+ * is left over is checked per row by {@link #matches(Cursor)}.
+ */
+final class CallLogQuery {
+
+    // Ids are inlined as integer literals, so SQLite's bound variable limit does not apply;
+    // this only keeps the selection string a reasonable size.
+    static final int MAX_INLINE_IDS = 5000;
+
+    // _ID breaks ties between calls logged in the same millisecond.
+    private static final String SORT_ORDER = Calls.DATE + " DESC, " + Calls._ID + " DESC";
+
+    final Uri uri;
+    @Nullable final String[] projection;
+    @Nullable final String selection;
+    @Nullable final String[] selectionArgs;
+    final String sortOrder;
+
+    // Phone numbers matching too many rows to select by _ID, or null when the selection
+    // already covers every predicate.
+    @Nullable private final CallLogNumbers residualPhoneNumbers;
+
+    private CallLogQuery(Uri uri, @Nullable String[] projection, @Nullable String selection,
+                         @Nullable String[] selectionArgs, String sortOrder,
+                         @Nullable CallLogNumbers residualPhoneNumbers) {
+        this.uri = uri;
+        this.projection = projection;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.sortOrder = sortOrder;
+        this.residualPhoneNumbers = residualPhoneNumbers;
+    }
+
+    /**
+     * Plans a query in (DATE DESC, _ID DESC) order; the required columns are projected in
+     * addition to the requested fields.
+     */
+    static CallLogQuery plan(CallLogFilter filter, CallLogProjection projection, int limit,
+                             CallLogNumberIndex numberIndex, String... requiredColumns) {
+        return plan(filter, projection, limit, null, requiredColumns, numberIndex);
+    }
+
+    /**
+     * Plans one page in (DATE DESC, _ID DESC) order starting after the given token. DATE
+     * and _ID are always projected so the next token can be read from the last row.
+     */
+    static CallLogQuery planPage(CallLogFilter filter, CallLogProjection projection, int limit,
+                                 @Nullable CallLogPageToken after, CallLogNumberIndex numberIndex) {
+        return plan(filter, projection, limit, after, new String[] { Calls.DATE, Calls._ID }, numberIndex);
+    }
+
+    private static CallLogQuery plan(CallLogFilter filter, CallLogProjection projection, int limit,
+                                     @Nullable CallLogPageToken after, String[] requiredColumns,
+                                     CallLogNumberIndex numberIndex) {
+        List<String> clauses = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+
+        if (after != null) {
+            clauses.add("(" + Calls.DATE + " < ? OR (" + Calls.DATE + " = ? AND " + Calls._ID + " < ?))");
+            args.add(Long.toString(after.date));
+            args.add(Long.toString(after.date));
+            args.add(Long.toString(after.id));
+        }
+
+        CallLogNumbers residualPhoneNumbers = addClauses(filter, clauses, args, numberIndex);
+
+        Uri uri = Calls.CONTENT_URI;
+        // The provider can only apply the limit when no rows are dropped afterwards.
+        if (limit >= 0 && residualPhoneNumbers == null) {
+            uri = uri.buildUpon()
+                    .appendQueryParameter(Calls.LIMIT_PARAM_KEY, Integer.toString(limit))
+                    .build();
+        }
+
+        List<String> columns = new ArrayList<>(Arrays.asList(requiredColumns));
+        if (residualPhoneNumbers != null) {
+            columns.addAll(Arrays.asList(CallLogNumbers.columns()));
+        }
+
+        return new CallLogQuery(
+                uri,
+                projection.columns(columns.toArray(new String[0])),
+                clauses.isEmpty() ? null : join(clauses, " AND "),
+                args.isEmpty() ? null : args.toArray(new String[0]),
+                SORT_ORDER,
+                residualPhoneNumbers);
+    }
+
+    /**
+     * Plans one scan returning every row that matches any of the filters, in the same order
+     * as {@link #plan}. Rows are not checked against the individual filters; see
+     * {@link CallLogBatch}.
+     */
+    static CallLogQuery planBatch(List<CallLogFilter> filters, @Nullable String[] columns,
+                                  CallLogNumberIndex numberIndex) {
+        List<String> alternatives = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        boolean unrestricted = false;
+
+        for (CallLogFilter filter : filters) {
+            List<String> clauses = new ArrayList<>();
+            addClauses(filter, clauses, args, numberIndex);
+            if (clauses.isEmpty()) {
+                unrestricted = true;
+                break;
+            }
+            alternatives.add("(" + join(clauses, " AND ") + ")");
+        }
+
+        if (unrestricted || alternatives.isEmpty()) {
+            return new CallLogQuery(Calls.CONTENT_URI, columns, null, null, SORT_ORDER, null);
+        }
+        return new CallLogQuery(Calls.CONTENT_URI, columns, join(alternatives, " OR "),
+                args.isEmpty() ? null : args.toArray(new String[0]), SORT_ORDER, null);
+    }
+
+    /**
+     * Adds the selection for the filter's predicates and returns the phone numbers that
+     * still have to be matched per row, if any.
+     */
+    @Nullable
+    private static CallLogNumbers addClauses(CallLogFilter filter, List<String> clauses, List<String> args,
+                                             CallLogNumberIndex numberIndex) {
+        if (filter.hasMinTimestamp()) {
+            clauses.add(Calls.DATE + " >= ?");
+            args.add(Long.toString(filter.minTimestamp));
+        }
+        if (filter.hasMaxTimestamp()) {
+            clauses.add(Calls.DATE + " <= ?");
+            args.add(Long.toString(filter.maxTimestamp));
+        }
+        if (!filter.types.isEmpty()) {
+            clauses.add(typeClause(filter.types, args));
+        }
+
+        // Phone numbers are matched regardless of formatting, which SQL cannot express, so
+        // the matching rows are looked up in the number index and selected by _ID.
+        if (!filter.phoneNumbers.isEmpty()) {
+            long[] ids = numberIndex.lookup(filter.phoneNumbers);
+            if (ids.length <= MAX_INLINE_IDS) {
+                clauses.add(idClause(ids));
+            } else {
+                return new CallLogNumbers(filter.phoneNumbers);
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    Cursor execute(ContentResolver resolver, CallLogRequest request) {
+        return resolver.query(uri, projection, selection, selectionArgs, sortOrder, request.cancellationSignal);
+    }
+
+    /**
+     * Resolves the columns read by {@link #matches(Cursor)}; call once per cursor.
+     */
+    void bind(Cursor cursor) {
+        if (residualPhoneNumbers != null) {
+            residualPhoneNumbers.bind(cursor);
+        }
+    }
+
+    boolean matches(Cursor cursor) {
+        return residualPhoneNumbers == null || residualPhoneNumbers.matches(cursor);
+    }
+
+    /**
+     * Whether the call log holds at least the given number of rows. The provider skips to
+     * the last of them and returns at most one id, so this costs about as much as a COUNT(*)
+     * where counting a projected cursor would copy the ids out of the provider. Answers true
+     * when the provider returns no cursor, so callers keep what they have.
+     */
+    static boolean hasAtLeast(ContentResolver resolver, int rows) {
+        if (rows <= 0) {
+            return true;
+        }
+        Uri uri = Calls.CONTENT_URI.buildUpon()
+                .appendQueryParameter(Calls.LIMIT_PARAM_KEY, "1")
+                .appendQueryParameter(Calls.OFFSET_PARAM_KEY, Integer.toString(rows - 1))
+                .build();
+        Cursor cursor = resolver.query(uri, new String[] { Calls._ID }, null, null, Calls._ID + " ASC");
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            return cursor.moveToNext();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String typeClause(Set<String> types, List<String> args) {
+        List<String> codes = new ArrayList<>();
+        for (String type : types) {
+            int code = CallType.codeOf(type);
+            if (code != -1) {
+                codes.add(Integer.toString(code));
+            }
+        }
+
+        List<String> alternatives = new ArrayList<>();
+        if (!codes.isEmpty()) {
+            alternatives.add(Calls.TYPE + " IN (" + placeholders(codes.size()) + ")");
+            args.addAll(codes);
+        }
+        if (types.contains(CallType.UNKNOWN)) {
+            alternatives.add(Calls.TYPE + " NOT IN (" + placeholders(CallType.KNOWN_CODES.length) + ")");
+            for (int code : CallType.KNOWN_CODES) {
+                args.add(Integer.toString(code));
+            }
+        }
+
+        // Only unrecognized type names were given, so nothing can match.
+        if (alternatives.isEmpty()) {
+            return "0";
+        }
+        return "(" + join(alternatives, " OR ") + ")";
+    }
+
+    private static String idClause(long[] ids) {
+        if (ids.length == 0) {
+            return "0";
+        }
+        StringBuilder sb = new StringBuilder(Calls._ID).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(ids[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.toString();
+    }
+
+    private static String join(List<String> parts, String separator) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.wscodelabs.callLogs;
+
+import android.os.CancellationSignal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.facebook.react.bridge.Promise;
+
+/**
+ * One provider scan and the promises waiting for it. Several promises share a request when
+ * identical queries are coalesced; the scan is cancelled once none of them wants it.
+ */
+final class CallLogRequest {
+
+    static final class Waiter {
+        final String requestId;
+        final Promise promise;
+
+        Waiter(String requestId, Promise promise) {
+            this.requestId = requestId;
+            this.promise = promise;
+        }
+    }
+
+    final String key;
+    final CancellationSignal cancellationSignal = new CancellationSignal();
+    final List<Waiter> waiters = new ArrayList<>();
+    // Replaced by the task that runs the scan while metrics are enabled.
+    CallLogTrace trace = CallLogTrace.DISABLED;
+    private volatile boolean cancelled;
+
+    CallLogRequest(String key) {
+        this.key = key;
+    }
+
+    void cancel() {
+        cancelled = true;
+        cancellationSignal.cancel();
+    }
+
+    /**
+     * Checked between rows so a cancelled scan stops without draining the cursor.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,32 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Collects call logs as an array of maps, one per row.
+ */
+final class CallLogRows implements CallLogSink {
+
+    private final CallLogProjection projection;
+    private final WritableArray result = Arguments.createArray();
+
+    CallLogRows(CallLogProjection projection) {
+        this.projection = projection;
+    }
+
+    @Override
+    public void add(Cursor cursor) {
+        WritableMap callLog = Arguments.createMap();
+        projection.write(cursor, callLog);
+        result.pushMap(callLog);
+    }
+
+    @Override
+    public WritableArray result() {
+        return result;
+    }
+}
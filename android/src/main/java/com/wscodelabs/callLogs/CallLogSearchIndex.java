@@ -0,0 +1,341 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CallLog.Calls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Typeahead search over the numbers and cached names in the call log. Every distinct number
+ * is one entry, indexed by all of its 1- to 3-character n-grams, so a keystroke only
+ * intersects a few posting lists and verifies the survivors instead of scanning the log.
+ * The index is built on first use and afterwards catches up on changed rows when the call
+ * log reports a change.
+ */
+final class CallLogSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    // Calls older than this count half as much towards the ranking.
+    private static final double HALF_LIFE_DAYS = 30;
+
+    private static final class Entry {
+        final String digits;
+        String number;
+        String name = "";
+        String lowerName = "";
+        long lastTimestamp;
+        int callCount;
+        double score;
+        boolean prefixMatch;
+
+        Entry(String digits) {
+            this.digits = digits;
+        }
+    }
+
+    private static final class Postings {
+        int[] values = new int[4];
+        int size;
+
+        void add(int entry) {
+            if (size > 0 && values[size - 1] == entry) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = entry;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final ContentObserver observer;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> entryByDigits = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long maxId = -1;
+    private long maxLastModified;
+    private int indexedRows;
+    private boolean built;
+    private volatile boolean stale;
+
+    CallLogSearchIndex(ContentResolver resolver) {
+        this.resolver = resolver;
+        this.observer = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                stale = true;
+            }
+        };
+    }
+
+    /**
+     * Numbers whose digits or cached name contain the query, ranked by prefix matches first
+     * and then by how often and how recently they were called.
+     */
+    synchronized WritableArray search(String query, int limit, CallLogRequest request) {
+        ensureCurrent(request);
+
+        WritableArray results = Arguments.createArray();
+        String lowerQuery = query.trim().toLowerCase(Locale.getDefault());
+        String digitQuery = CallLogNumbers.digits(query);
+        if (lowerQuery.isEmpty()) {
+            return results;
+        }
+
+        long started = request.trace.now();
+        BitSet candidates = candidates(lowerQuery);
+        if (!digitQuery.isEmpty() && !digitQuery.equals(lowerQuery)) {
+            candidates.or(candidates(digitQuery));
+        }
+
+        long now = System.currentTimeMillis();
+        List<Entry> matches = new ArrayList<>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            Entry entry = entries.get(i);
+            boolean numberMatch = !digitQuery.isEmpty() && entry.digits.contains(digitQuery);
+            boolean nameMatch = entry.lowerName.contains(lowerQuery);
+            if (!numberMatch && !nameMatch) {
+                continue;
+            }
+
+            entry.prefixMatch = (numberMatch && entry.digits.startsWith(digitQuery))
+                    || (nameMatch && isWordPrefix(entry.lowerName, lowerQuery));
+            double ageDays = Math.max(0, now - entry.lastTimestamp) / (double) DAY_MILLIS;
+            entry.score = entry.callCount * Math.pow(0.5, ageDays / HALF_LIFE_DAYS);
+            matches.add(entry);
+        }
+
+        Collections.sort(matches, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                if (a.prefixMatch != b.prefixMatch) {
+                    return a.prefixMatch ? -1 : 1;
+                }
+                if (a.score != b.score) {
+                    return Double.compare(b.score, a.score);
+                }
+                return Long.valueOf(b.lastTimestamp).compareTo(a.lastTimestamp);
+            }
+        });
+
+        int size = limit < 0 ? matches.size() : Math.min(limit, matches.size());
+        for (int i = 0; i < size; i++) {
+            Entry entry = matches.get(i);
+            WritableMap result = Arguments.createMap();
+            result.putString("phoneNumber", entry.number);
+            result.putString("name", entry.name);
+            result.putDouble("lastTimestamp", entry.lastTimestamp);
+            result.putInt("callCount", entry.callCount);
+            results.pushMap(result);
+        }
+        // Matching reads no rows; the rows of the catch-up above were recorded by it.
+        request.trace.scanned(started, 0, size);
+        return results;
+    }
+
+    synchronized void close() {
+        if (built) {
+            resolver.unregisterContentObserver(observer);
+        }
+    }
+
+    /**
+     * Entries containing every n-gram of the query; a superset of the real matches.
+     */
+    private BitSet candidates(String query) {
+        BitSet result = null;
+        if (query.length() <= GRAM) {
+            result = toBitSet(postings.get(query));
+        } else {
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                BitSet gram = toBitSet(postings.get(query.substring(i, i + GRAM)));
+                if (result == null) {
+                    result = gram;
+                } else {
+                    result.and(gram);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BitSet toBitSet(@Nullable Postings list) {
+        BitSet bits = new BitSet();
+        if (list != null) {
+            for (int i = 0; i < list.size; i++) {
+                bits.set(list.values[i]);
+            }
+        }
+        return bits;
+    }
+
+    private static boolean isWordPrefix(String text, String prefix) {
+        for (int i = text.indexOf(prefix); i >= 0; i = text.indexOf(prefix, i + 1)) {
+            if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureCurrent(CallLogRequest request) {
+        if (!built) {
+            resolver.registerContentObserver(Calls.CONTENT_URI, true, observer);
+            built = true;
+            stale = true;
+        }
+        if (!stale) {
+            return;
+        }
+        stale = false;
+
+        try {
+            // The provider keeps no record of deleted rows; start over when rows disappeared.
+            if (indexedRows > 0 && !CallLogQuery.hasAtLeast(resolver, indexedRows)) {
+                clear();
+            }
+            readChangedRows(request);
+        } catch (RuntimeException e) {
+            // Including a cancelled query; the next search reads the changes again.
+            stale = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads rows added or modified since the last call in _ID order. A cancelled request
+     * stops early; the next search resumes after the last row read.
+     */
+    private void readChangedRows(CallLogRequest request) {
+        boolean hasLastModified = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+        List<String> columns = new ArrayList<>(Arrays.asList(Calls._ID, Calls.NUMBER, Calls.CACHED_NAME, Calls.DATE));
+        String selection = Calls._ID + " > ?";
+        String[] selectionArgs = { Long.toString(maxId) };
+        if (hasLastModified) {
+            columns.add(Calls.LAST_MODIFIED);
+            selection += " OR " + Calls.LAST_MODIFIED + " > ?";
+            selectionArgs = new String[] { Long.toString(maxId), Long.toString(maxLastModified) };
+        }
+        if (CallLogNumbers.hasNormalizedNumber()) {
+            columns.add(Calls.CACHED_NORMALIZED_NUMBER);
+        }
+
+        CallLogTrace trace = request.trace;
+        long queryStarted = trace.now();
+        Cursor cursor = resolver.query(Calls.CONTENT_URI, columns.toArray(new String[0]), selection, selectionArgs,
+                Calls._ID + " ASC", request.cancellationSignal);
+        trace.queried(queryStarted);
+        if (cursor == null) {
+            stale = true;
+            return;
+        }
+
+        long started = trace.now();
+        int scannedCount = 0;
+        try {
+            int lastModifiedIndex = cursor.getColumnIndex(Calls.LAST_MODIFIED);
+            int normalizedIndex = cursor.getColumnIndex(Calls.CACHED_NORMALIZED_NUMBER);
+            while (!request.isCancelled() && cursor.moveToNext()) {
+                scannedCount++;
+                long id = cursor.getLong(0);
+                String number = cursor.getString(1);
+                String normalized = normalizedIndex != -1 ? cursor.getString(normalizedIndex) : null;
+                String digits = CallLogNumbers.digits(normalized != null ? normalized : number);
+                boolean isNew = id > maxId;
+
+                if (!digits.isEmpty()) {
+                    add(digits, number, cursor.getString(2), cursor.getLong(3), isNew);
+                }
+                if (isNew) {
+                    indexedRows++;
+                }
+                maxId = Math.max(maxId, id);
+                if (lastModifiedIndex != -1) {
+                    maxLastModified = Math.max(maxLastModified, cursor.getLong(lastModifiedIndex));
+                }
+            }
+            if (request.isCancelled()) {
+                stale = true;
+            }
+        } finally {
+            cursor.close();
+            trace.scanned(started, scannedCount, 0);
+        }
+    }
+
+    private void add(String digits, @Nullable String number, @Nullable String name, long timestamp, boolean isNew) {
+        Integer index = entryByDigits.get(digits);
+        Entry entry;
+        if (index == null) {
+            index = entries.size();
+            entry = new Entry(digits);
+            entries.add(entry);
+            entryByDigits.put(digits, index);
+            addGrams(digits, index);
+        } else {
+            entry = entries.get(index);
+        }
+
+        if (isNew) {
+            entry.callCount++;
+        }
+        if (timestamp >= entry.lastTimestamp) {
+            entry.lastTimestamp = timestamp;
+            entry.number = number;
+        }
+        if (name != null && !name.isEmpty() && !name.equals(entry.name)) {
+            entry.name = name;
+            entry.lowerName = name.toLowerCase(Locale.getDefault());
+            // Grams of a previous name stay behind; candidates are verified before returning.
+            addGrams(entry.lowerName, index);
+        }
+    }
+
+    private void addGrams(String text, int entry) {
+        for (int start = 0; start < text.length(); start++) {
+            for (int length = 1; length <= GRAM && start + length <= text.length(); length++) {
+                String gram = text.substring(start, start + length);
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    list = new Postings();
+                    postings.put(gram, list);
+                }
+                list.add(entry);
+            }
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        entryByDigits.clear();
+        postings.clear();
+        maxId = -1;
+        maxLastModified = 0;
+        indexedRows = 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+
+/**
+ * Receives each call log that passes the filter while the cursor is scanned.
+ */
+interface CallLogSink {
+
+    void add(Cursor cursor);
+
+    /**
+     * The collected result, handed to the bridge as is.
+     */
+    Object result();
+}
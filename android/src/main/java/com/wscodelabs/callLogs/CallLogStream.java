@@ -0,0 +1,98 @@
+package com.wscodelabs.callLogs;
+
+import android.database.Cursor;
+
+/**
+ * An open cursor being delivered to JS in batches. The next batch is only read once JS
+ * acknowledges the previous one, so at most one batch is in flight per stream. Batches are
+ * read on the query executor while cancellation arrives on the native modules thread, so
+ * the cursor is only touched while holding the stream's lock.
+ */
+final class CallLogStream {
+
+    final String id;
+    final CallLogRequest request;
+    private final int limit;
+    private final int batchSize;
+    private int count;
+
+    private Cursor cursor;
+    private CallLogQuery query;
+    private CallLogProjection projection;
+    private boolean closed;
+
+    CallLogStream(String id, int limit, int batchSize) {
+        this.id = id;
+        this.request = new CallLogRequest(id);
+        this.limit = limit;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Attaches the query result; returns false and closes the cursor when the stream was
+     * cancelled while the query ran.
+     */
+    synchronized boolean open(Cursor cursor, CallLogQuery query, CallLogProjection projection) {
+        if (closed) {
+            cursor.close();
+            return false;
+        }
+        this.cursor = cursor;
+        this.query = query;
+        this.projection = projection;
+        return true;
+    }
+
+    Cursor cursor() {
+        return cursor;
+    }
+
+    CallLogQuery query() {
+        return query;
+    }
+
+    CallLogProjection projection() {
+        return projection;
+    }
+
+    /**
+     * Number of rows to read for the next batch; 0 once the limit is reached.
+     */
+    int nextBatchSize() {
+        return limit < 0 ? batchSize : Math.min(batchSize, limit - count);
+    }
+
+    void advance(int read) {
+        count += read;
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the query or scan and closes the stream; returns false if it was already closed.
+     */
+    boolean cancel() {
+        request.cancel();
+        return close();
+    }
+
+    /**
+     * Closes the cursor; returns false if the stream was already closed.
+     */
+    synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        if (cursor != null) {
+            cursor.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.wscodelabs.callLogs;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Timings and row counts of one request, recorded while CallLogMetrics is enabled. The
+ * disabled instance ignores every call and never reads the clock, so untraced requests
+ * pay nothing but a field check.
+ */
+final class CallLogTrace {
+
+    static final CallLogTrace DISABLED = new CallLogTrace(null, null, false);
+
+    private final String method;
+    private final String key;
+    private final boolean enabled;
+    private final long startedAt;
+    private final long startedAtMillis;
+
+    private long queryNanos;
+    private long scanNanos;
+    // Time spent decoding rows during the scan; the rest of the scan is cursor traversal.
+    private long decodeNanos;
+    private long marshallingNanos;
+    private long totalNanos;
+    private long rowsScanned;
+    private long rowsReturned;
+    private boolean cached;
+
+    CallLogTrace(String method, String key, boolean enabled) {
+        this.method = method;
+        this.key = key;
+        this.enabled = enabled;
+        this.startedAt = enabled ? System.nanoTime() : 0;
+        this.startedAtMillis = enabled ? System.currentTimeMillis() : 0;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    long now() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time the provider took to return a cursor since the given {@link #now()}.
+     */
+    void queried(long since) {
+        if (enabled) {
+            queryNanos += System.nanoTime() - since;
+        }
+    }
+
+    /**
+     * Records a row decoded during the scan.
+     */
+    void decoded(long since) {
+        if (enabled) {
+            long elapsed = System.nanoTime() - since;
+            decodeNanos += elapsed;
+            marshallingNanos += elapsed;
+        }
+    }
+
+    /**
+     * Records bridge work outside the scan, such as building the result.
+     */
+    void marshalled(long since) {
+        if (enabled) {
+            marshallingNanos += System.nanoTime() - since;
+        }
+    }
+
+    void scanned(long since, long rowsScanned, long rowsReturned) {
+        if (enabled) {
+            scanNanos += System.nanoTime() - since;
+            this.rowsScanned += rowsScanned;
+            this.rowsReturned += rowsReturned;
+        }
+    }
+
+    void cached(long rowsReturned) {
+        if (enabled) {
+            this.cached = true;
+            this.rowsReturned = rowsReturned;
+        }
+    }
+
+    void finish() {
+        totalNanos = System.nanoTime() - startedAt;
+    }
+
+    WritableMap toMap() {
+        WritableMap map = Arguments.createMap();
+        map.putString("method", method);
+        map.putString("key", key);
+        map.putDouble("startedAt", startedAtMillis);
+        map.putBoolean("cached", cached);
+        map.putDouble("totalMillis", millis(totalNanos));
+        map.putDouble("queryMillis", millis(queryNanos));
+        map.putDouble("traversalMillis", millis(scanNanos - decodeNanos));
+        map.putDouble("marshallingMillis", millis(marshallingNanos));
+        map.putDouble("rowsScanned", rowsScanned);
+        map.putDouble("rowsReturned", rowsReturned);
+        return map;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,42 @@
+package com.wscodelabs.callLogs;
+
+/**
+ * How far the change feed has synced: the highest LAST_MODIFIED and _ID seen so far. Handed
+ * to JS with every change event so a later subscription can resume from it.
+ */
+final class CallLogWatermark {
+
+    private static final String SEPARATOR = ":";
+
+    static final CallLogWatermark ORIGIN = new CallLogWatermark(0, 0);
+
+    final long lastModified;
+    final long maxId;
+
+    CallLogWatermark(long lastModified, long maxId) {
+        this.lastModified = lastModified;
+        this.maxId = maxId;
+    }
+
+    static CallLogWatermark decode(String token) {
+        int separator = token.indexOf(SEPARATOR);
+        if (separator == -1) {
+            throw new IllegalArgumentException("Invalid watermark: " + token);
+        }
+        try {
+            return new CallLogWatermark(
+                    Long.parseLong(token.substring(0, separator)),
+                    Long.parseLong(token.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid watermark: " + token);
+        }
+    }
+
+    CallLogWatermark advance(long lastModified, long id) {
+        return new CallLogWatermark(Math.max(this.lastModified, lastModified), Math.max(maxId, id));
+    }
+
+    String encode() {
+        return lastModified + SEPARATOR + maxId;
+    }
+}
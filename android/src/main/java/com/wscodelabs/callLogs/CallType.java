@@ -0,0 +1,56 @@
+package com.wscodelabs.callLogs;
+
+import android.provider.CallLog.Calls;
+
+final class CallType {
+
+    static final String UNKNOWN = "UNKNOWN";
+
+    // Every code the provider documents; anything else is reported as UNKNOWN.
+    static final int[] KNOWN_CODES = {
+            Calls.OUTGOING_TYPE,
+            Calls.INCOMING_TYPE,
+            Calls.MISSED_TYPE,
+            Calls.VOICEMAIL_TYPE,
+            Calls.REJECTED_TYPE,
+            Calls.BLOCKED_TYPE,
+            Calls.ANSWERED_EXTERNALLY_TYPE
+    };
+
+    private CallType() {
+    }
+
+    static String resolve(int callTypeCode) {
+        switch (callTypeCode) {
+            case Calls.OUTGOING_TYPE:
+                return "OUTGOING";
+            case Calls.INCOMING_TYPE:
+                return "INCOMING";
+            case Calls.MISSED_TYPE:
+                return "MISSED";
+            case Calls.VOICEMAIL_TYPE:
+                return "VOICEMAIL";
+            case Calls.REJECTED_TYPE:
+                return "REJECTED";
+            case Calls.BLOCKED_TYPE:
+                return "BLOCKED";
+            case Calls.ANSWERED_EXTERNALLY_TYPE:
+                return "ANSWERED_EXTERNALLY";
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns the provider code for a normalized type name, or -1 when the name is
+     * UNKNOWN or not a type at all.
+     */
+    static int codeOf(String type) {
+        for (int code : KNOWN_CODES) {
+            if (resolve(code).equals(type)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,121 @@
+package com.wscodelabs.callLogs;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A simple timing harness for module methods. Each operation is run a few times to warm
+ * up and then measured one call at a time: wall-clock latency, rows scanned per second
+ * from the request traces of {@link CallLogModule#getStats}, and bytes allocated across
+ * all threads.
+ */
+final class CallLogBenchmark {
+
+    static final String PROPERTY = "callLogs.benchmark";
+
+    interface Operation {
+        /**
+         * Calls the module once and waits for the result. The iteration differs on every
+         * call, so operations can keep the result cache out of the measurement.
+         */
+        void run(int iteration) throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final int rows;
+        final long[] nanos;
+        final long rowsScanned;
+        final long allocatedBytes;
+
+        Result(String name, int rows, long[] nanos, long rowsScanned, long allocatedBytes) {
+            this.name = name;
+            this.rows = rows;
+            this.nanos = nanos;
+            this.rowsScanned = rowsScanned;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double percentileMillis(double percentile) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        double rowsScannedPerSecond() {
+            long total = 0;
+            for (long n : nanos) {
+                total += n;
+            }
+            return total == 0 ? 0 : rowsScanned * 1e9 / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%-36s %7d rows  p50 %8.2f ms  p90 %8.2f ms  %,12.0f rows scanned/s  %,10d KB allocated/op",
+                    name, rows, percentileMillis(0.5), percentileMillis(0.9), rowsScannedPerSecond(),
+                    allocatedBytes / nanos.length / 1024);
+        }
+    }
+
+    private final CallLogModule module;
+    private final int rows;
+    private final int warmUps;
+    private final int iterations;
+    private int nextIteration;
+
+    CallLogBenchmark(CallLogModule module, int rows, int warmUps, int iterations) {
+        this.module = module;
+        this.rows = rows;
+        this.warmUps = warmUps;
+        this.iterations = iterations;
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    Result measure(String name, Operation operation) throws Exception {
+        for (int i = 0; i < warmUps; i++) {
+            operation.run(nextIteration++);
+        }
+
+        long[] nanos = new long[iterations];
+        long rowsScanned = 0;
+        long allocatedBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            // Re-enabling drops the traces of earlier calls.
+            module.setStatsEnabled(false);
+            module.setStatsEnabled(true);
+
+            long allocatedBefore = CallLogTests.allocatedBytesOfAllThreads();
+            long started = System.nanoTime();
+            operation.run(nextIteration++);
+            nanos[i] = System.nanoTime() - started;
+            allocatedBytes += CallLogTests.allocatedBytesOfAllThreads() - allocatedBefore;
+            rowsScanned += rowsScanned();
+        }
+        module.setStatsEnabled(false);
+
+        Result result = new Result(name, rows, nanos, rowsScanned, allocatedBytes);
+        System.out.println(result);
+        return result;
+    }
+
+    private long rowsScanned() {
+        Promise promise = CallLogTests.newPromise();
+        module.getStats(promise);
+        ReadableArray requests = ((ReadableMap) CallLogTests.await(promise)).getArray("requests");
+        long scanned = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            scanned += (long) requests.getMap(i).getDouble("rowsScanned");
+        }
+        return scanned;
+    }
+}
@@ -0,0 +1,170 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CallLogColumnsTest {
+
+    private static final int ROWS = 50000;
+    private static final int WARM_UP_ROWS = 2000;
+
+    /**
+     * What building and handing over one result cost. Walking the result the way the bridge
+     * converts it stands in for marshalling, which needs the native bridge.
+     */
+    private static final class Cost {
+        long buildNanos;
+        long marshalNanos;
+        long allocatedBytes;
+        long retainedBytes;
+        int containers;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "build %.1f ms, marshal %.1f ms, allocated %d KB, retained %d KB, %d containers",
+                    buildNanos / 1e6, marshalNanos / 1e6, allocatedBytes / 1024, retainedBytes / 1024, containers);
+        }
+    }
+
+    @Test
+    public void holdsTheSameCallsAsRows() {
+        ContentValues[] rows = SyntheticCallLog.generate(200, CallLogTests.SEED);
+        ReadableArray callLogs = (ReadableArray) build(CallLogTests.cursorOf(rows), false);
+        ReadableMap columnar = (ReadableMap) build(CallLogTests.cursorOf(rows), true);
+
+        assertEquals(CallLogColumns.FORMAT, columnar.getString("format"));
+        assertEquals(callLogs.size(), columnar.getInt("length"));
+        ReadableMap columns = columnar.getMap("columns");
+        ReadableArray numbers = columns.getArray(Calls.NUMBER);
+        ReadableArray dates = columns.getArray(Calls.DATE);
+        for (int i = 0; i < callLogs.size(); i++) {
+            assertEquals(callLogs.getMap(i).getDouble(Calls.DATE), dates.getDouble(i), 0);
+            String number = columnar.getMap("dictionaries").hasKey(Calls.NUMBER)
+                    ? columnar.getMap("dictionaries").getArray(Calls.NUMBER).getString(numbers.getInt(i))
+                    : numbers.getString(i);
+            assertEquals(callLogs.getMap(i).getString(Calls.NUMBER), number);
+        }
+    }
+
+    @Test
+    public void columnarCostsLessThanRows() {
+        ContentValues[] rows = SyntheticCallLog.generate(ROWS, CallLogTests.SEED);
+        ContentValues[] warmUpRows = Arrays.copyOf(rows, WARM_UP_ROWS);
+        measure(warmUpRows, false);
+        measure(warmUpRows, true);
+
+        Cost callLogs = measure(rows, false);
+        Cost columnar = measure(rows, true);
+
+        System.out.println(String.format(Locale.US, "%d rows as rows: %s", ROWS, callLogs));
+        System.out.println(String.format(Locale.US, "%d rows as columns: %s", ROWS, columnar));
+        assertTrue(columnar.allocatedBytes < callLogs.allocatedBytes);
+        assertTrue(columnar.retainedBytes < callLogs.retainedBytes);
+        assertTrue(columnar.containers < 100);
+        assertEquals(ROWS + 1, callLogs.containers);
+    }
+
+    private static Cost measure(ContentValues[] rows, boolean columnar) {
+        MatrixCursor cursor = CallLogTests.cursorOf(rows);
+        Cost cost = new Cost();
+        long heapBefore = CallLogTests.usedHeapAfterGc();
+
+        long allocatedBefore = CallLogTests.allocatedBytes();
+        long started = System.nanoTime();
+        Object result = build(cursor, columnar);
+        cost.buildNanos = System.nanoTime() - started;
+        cost.allocatedBytes = CallLogTests.allocatedBytes() - allocatedBefore;
+
+        started = System.nanoTime();
+        cost.containers = walk(result);
+        cost.marshalNanos = System.nanoTime() - started;
+
+        cost.retainedBytes = CallLogTests.usedHeapAfterGc() - heapBefore;
+        // Keeps the result reachable until the heap has been measured.
+        assertTrue(result != null);
+        return cost;
+    }
+
+    private static Object build(Cursor cursor, boolean columnar) {
+        CallLogProjection projection = CallLogProjection.of(null);
+        projection.bind(cursor);
+        CallLogSink sink = columnar ? new CallLogColumns(projection) : new CallLogRows(projection);
+        while (cursor.moveToNext()) {
+            sink.add(cursor);
+        }
+        return sink.result();
+    }
+
+    /**
+     * Visits every value through the readable interfaces and returns the number of maps and
+     * arrays, each of which the bridge converts separately.
+     */
+    private static int walk(Object value) {
+        if (value instanceof ReadableMap) {
+            ReadableMap map = (ReadableMap) value;
+            int containers = 1;
+            ReadableMapKeySetIterator keys = map.keySetIterator();
+            while (keys.hasNextKey()) {
+                String key = keys.nextKey();
+                switch (map.getType(key)) {
+                    case Map:
+                        containers += walk(map.getMap(key));
+                        break;
+                    case Array:
+                        containers += walk(map.getArray(key));
+                        break;
+                    case String:
+                        map.getString(key);
+                        break;
+                    case Number:
+                        map.getDouble(key);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return containers;
+        }
+        if (value instanceof ReadableArray) {
+            ReadableArray array = (ReadableArray) value;
+            int containers = 1;
+            for (int i = 0; i < array.size(); i++) {
+                switch (array.getType(i)) {
+                    case Map:
+                        containers += walk(array.getMap(i));
+                        break;
+                    case Array:
+                        containers += walk(array.getArray(i));
+                        break;
+                    case String:
+                        array.getString(i);
+                        break;
+                    case Number:
+                        array.getDouble(i);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return containers;
+        }
+        return 0;
+    }
+}
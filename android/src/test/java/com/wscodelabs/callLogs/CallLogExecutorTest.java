@@ -0,0 +1,205 @@
+package com.wscodelabs.callLogs;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+public class CallLogExecutorTest {
+
+    private static final int ROWS = 1000000;
+    private static final int PAUSE_AT = 100;
+    private static final int PROVIDER_ROWS = 10000;
+
+    private CallLogExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new CallLogExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void duplicateRequestsInFlightRunOnce() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CallLogExecutor.Task task = new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) throws Exception {
+                runs.incrementAndGet();
+                started.countDown();
+                release.await();
+                return JavaOnlyArray.of("call");
+            }
+        };
+
+        Promise first = CallLogTests.newPromise();
+        Promise second = CallLogTests.newPromise();
+        executor.submit("first", "load|10", first, task);
+        assertTrue(started.await(CallLogTests.TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        executor.submit("second", "load|10", second, task);
+        release.countDown();
+
+        ReadableArray firstResult = (ReadableArray) CallLogTests.await(first);
+        ReadableArray secondResult = (ReadableArray) CallLogTests.await(second);
+        assertEquals(1, runs.get());
+        assertEquals(firstResult.toArrayList(), secondResult.toArrayList());
+        // Each promise gets its own copy; bridge values can only be sent once.
+        assertNotSame(firstResult, secondResult);
+    }
+
+    @Test
+    public void interactiveRequestsDoNotWaitBehindLoads() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        CallLogExecutor.Task load = new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) throws Exception {
+                release.await();
+                return JavaOnlyArray.of();
+            }
+        };
+
+        // More loads than threads, so the rest are queued.
+        Promise[] loads = new Promise[4];
+        for (int i = 0; i < loads.length; i++) {
+            loads[i] = CallLogTests.newPromise();
+            executor.submit(null, "load|" + i, loads[i], load);
+        }
+        Promise search = CallLogTests.newPromise();
+        executor.submitInteractive(null, "search", search, new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) {
+                return JavaOnlyArray.of("result");
+            }
+        });
+
+        assertEquals(1, ((ReadableArray) CallLogTests.await(search)).size());
+        release.countDown();
+        for (Promise promise : loads) {
+            CallLogTests.await(promise);
+        }
+    }
+
+    @Test
+    public void cancelledLoadStopsScanning() throws Exception {
+        FakeCallLogProvider provider = CallLogTests.installProvider(PROVIDER_ROWS);
+        CallLogModule module = CallLogTests.newModule();
+
+        provider.holdAt(PAUSE_AT);
+        Promise promise = CallLogTests.newPromise();
+        module.loadWithFilter(-1, null, "scan", promise);
+        assertTrue(provider.awaitQuery(CallLogTests.TIMEOUT_MILLIS));
+        module.cancel("scan");
+        provider.release();
+        assertTrue(provider.awaitClose(CallLogTests.TIMEOUT_MILLIS));
+
+        verify(promise).reject(eq(CallLogExecutor.E_CANCELLED), anyString());
+        verify(promise, never()).resolve(any());
+        // The row the scan was held at is read, then the cancellation is noticed.
+        assertEquals(PAUSE_AT + 1, provider.rowsRead.get());
+        assertEquals(PROVIDER_ROWS, provider.rowsReturned.get());
+    }
+
+    @Test
+    public void cancelledSearchResumesIndexingOnTheNextSearch() throws Exception {
+        FakeCallLogProvider provider = CallLogTests.installProvider(PROVIDER_ROWS);
+        CallLogModule module = CallLogTests.newModule();
+        String query = SyntheticCallLog.number(0, 3).substring(2, 7);
+
+        provider.holdAt(PAUSE_AT);
+        Promise cancelled = CallLogTests.newPromise();
+        module.search(query, 5, "search", cancelled);
+        assertTrue(provider.awaitQuery(CallLogTests.TIMEOUT_MILLIS));
+        module.cancel("search");
+        provider.release();
+        assertTrue(provider.awaitClose(CallLogTests.TIMEOUT_MILLIS));
+
+        verify(cancelled).reject(eq(CallLogExecutor.E_CANCELLED), anyString());
+        assertEquals(PAUSE_AT + 1, provider.rowsRead.get());
+
+        Promise promise = CallLogTests.newPromise();
+        module.search(query, 5, null, promise);
+        ReadableArray results = (ReadableArray) CallLogTests.await(promise);
+        assertEquals(5, results.size());
+        // Only the rows after the cancelled read were indexed, plus the one row that shows
+        // nothing was deleted.
+        assertEquals(PROVIDER_ROWS + 1, provider.rowsRead.get());
+    }
+
+    @Test
+    public void cancellingOneWaiterKeepsTheSharedScan() throws Exception {
+        final AtomicInteger scanned = new AtomicInteger();
+        final CountDownLatch paused = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        CallLogExecutor.Task task = new CallLogExecutor.Task() {
+            @Override
+            public Object run(CallLogRequest request) throws Exception {
+                for (int i = 0; i < ROWS && !request.isCancelled(); i++) {
+                    scanned.incrementAndGet();
+                    if (i == PAUSE_AT) {
+                        paused.countDown();
+                        resume.await();
+                    }
+                }
+                return JavaOnlyMap.of("length", scanned.get());
+            }
+        };
+
+        Promise cancelled = CallLogTests.newPromise();
+        Promise kept = CallLogTests.newPromise();
+        executor.submit("cancelled", "aggregate", cancelled, task);
+        executor.submit("kept", "aggregate", kept, task);
+        assertTrue(paused.await(CallLogTests.TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        executor.cancel("cancelled");
+        resume.countDown();
+
+        CallLogTests.await(kept);
+        assertEquals(ROWS, scanned.get());
+        verify(cancelled).reject(eq(CallLogExecutor.E_CANCELLED), anyString());
+        verify(cancelled, never()).resolve(any());
+    }
+
+    @Test
+    public void duplicateLoadsShareOneProviderQuery() throws Exception {
+        FakeCallLogProvider provider = CallLogTests.installProvider(1000);
+        CallLogModule module = CallLogTests.newModule();
+        JavaOnlyMap filter = JavaOnlyMap.of("types", CallLogTests.json("INCOMING"));
+
+        provider.hold();
+        Promise first = CallLogTests.newPromise();
+        module.loadWithFilter(50, filter, "first", first);
+        assertTrue(provider.awaitQuery(CallLogTests.TIMEOUT_MILLIS));
+        Promise second = CallLogTests.newPromise();
+        module.loadWithFilter(50, filter, "second", second);
+        provider.release();
+
+        assertEquals(50, ((ReadableArray) CallLogTests.await(first)).size());
+        assertEquals(50, ((ReadableArray) CallLogTests.await(second)).size());
+        assertEquals(1, provider.queries.get());
+    }
+}
@@ -0,0 +1,245 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency, scan rate and allocations of load, loadPage, loadBatch, aggregate, search and
+ * exportTo on
+ * synthetic call logs of 1k, 10k and 100k rows with a realistic mix of filters. Skipped
+ * unless run with -Pbenchmark; Robolectric's SQLite and bridge collections are not the
+ * device's, so compare numbers between commits rather than with device timings.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CallLogModuleBenchmarkTest {
+
+    private static final long MONTH_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    private static final int SEARCH_NUMBERS = 20000;
+    private static final String EXPORT_PATH = "benchmark/export";
+    private static final String[] FIELDS = {
+            CallLogProjection.PHONE_NUMBER, CallLogProjection.TIMESTAMP, CallLogProjection.NORMALIZED_TYPE, Calls.DURATION };
+
+    private CallLogModule module;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("Benchmarks only run with -Pbenchmark", CallLogBenchmark.isEnabled());
+    }
+
+    @Test
+    public void benchmark1k() throws Exception {
+        run(1000, 5, 20);
+    }
+
+    @Test
+    public void benchmark10k() throws Exception {
+        run(10000, 3, 10);
+    }
+
+    @Test
+    public void benchmark100k() throws Exception {
+        run(100000, 2, 5);
+    }
+
+    /**
+     * Typeahead on a log with 20k distinct numbers, ten times the contacts of the other runs,
+     * one keystroke at a time after the index has been built.
+     */
+    @Test
+    public void benchmarkSearch20kNumbers() throws Exception {
+        FakeCallLogProvider provider = CallLogTests.installProvider(10000);
+        ContentValues[] numbers = new ContentValues[SEARCH_NUMBERS];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = new ContentValues();
+            numbers[i].put(Calls.NUMBER, SyntheticCallLog.number(2000 + i, i % 3));
+            numbers[i].put(Calls.TYPE, Calls.INCOMING_TYPE);
+            numbers[i].put(Calls.DATE, SyntheticCallLog.NOW - i * 1000L);
+        }
+        provider.addCalls(numbers);
+        module = CallLogTests.newModule();
+        CallLogBenchmark benchmark = new CallLogBenchmark(module, 10000 + SEARCH_NUMBERS, 2, 10);
+        final String typed = SyntheticCallLog.number(2000 + SEARCH_NUMBERS / 2, 2);
+
+        for (int length = 1; length <= 5; length += 2) {
+            final String query = typed.substring(3, 3 + length);
+            benchmark.measure("search \"" + query + "\" of 20k numbers", new CallLogBenchmark.Operation() {
+                @Override
+                public void run(int iteration) {
+                    search(query);
+                }
+            });
+        }
+        benchmark.measure("search \"contact 1\" of 20k numbers", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                search("contact 1");
+            }
+        });
+    }
+
+    private void run(int rows, int warmUps, int iterations) throws Exception {
+        CallLogTests.installProvider(rows);
+        module = CallLogTests.newModule();
+        CallLogBenchmark benchmark = new CallLogBenchmark(module, rows, warmUps, iterations);
+        final String contact = SyntheticCallLog.number(0, 1);
+        final String lastMonth = Long.toString(SyntheticCallLog.NOW - MONTH_MILLIS);
+
+        // What any provider query costs here, independent of the module.
+        benchmark.measure("provider query of 1 row (baseline)", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                Cursor cursor = RuntimeEnvironment.application.getContentResolver().query(
+                        Calls.CONTENT_URI.buildUpon().appendQueryParameter(Calls.LIMIT_PARAM_KEY, "1").build(),
+                        null, null, null, null);
+                cursor.moveToNext();
+                cursor.close();
+            }
+        });
+        benchmark.measure("load latest 100", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                load(100, JavaOnlyMap.of("maxTimestamp", uncached(iteration)));
+            }
+        });
+        benchmark.measure("load missed in the last month", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                load(-1, JavaOnlyMap.of(
+                        "types", CallLogTests.json("MISSED"),
+                        "minTimestamp", lastMonth,
+                        "maxTimestamp", uncached(iteration)));
+            }
+        });
+        benchmark.measure("load one number", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                load(-1, JavaOnlyMap.of(
+                        "phoneNumbers", CallLogTests.json(contact),
+                        "maxTimestamp", uncached(iteration)));
+            }
+        });
+        benchmark.measure("load all, 4 fields", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                load(-1, JavaOnlyMap.of(
+                        "fields", CallLogTests.json(FIELDS),
+                        "maxTimestamp", uncached(iteration)));
+            }
+        });
+        benchmark.measure("load all, 4 fields, columnar", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                load(-1, JavaOnlyMap.of(
+                        "fields", CallLogTests.json(FIELDS),
+                        "format", CallLogColumns.FORMAT,
+                        "maxTimestamp", uncached(iteration)));
+            }
+        });
+        benchmark.measure("loadPage incoming, 5 pages of 50", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                String token = null;
+                for (int page = 0; page < 5; page++) {
+                    Promise promise = CallLogTests.newPromise();
+                    module.loadPage(50, token, JavaOnlyMap.of("types", CallLogTests.json("INCOMING")), null, promise);
+                    token = ((ReadableMap) CallLogTests.await(promise)).getString("nextToken");
+                    if (token == null) {
+                        break;
+                    }
+                }
+            }
+        });
+        benchmark.measure("loadBatch latest, missed, one number", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                Promise promise = CallLogTests.newPromise();
+                module.loadBatch(JavaOnlyArray.of(
+                        JavaOnlyMap.of("limit", 20),
+                        JavaOnlyMap.of("limit", 20, "filter", JavaOnlyMap.of("types", CallLogTests.json("MISSED"))),
+                        JavaOnlyMap.of("limit", 20, "filter", JavaOnlyMap.of("phoneNumbers", CallLogTests.json(contact)))),
+                        null, promise);
+                assertTrue(((ReadableArray) CallLogTests.await(promise)).size() == 3);
+            }
+        });
+        benchmark.measure("aggregate by type and day", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                aggregate(JavaOnlyMap.of("histogram", "day"), null);
+            }
+        });
+        benchmark.measure("aggregate missed, top 10 numbers", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                aggregate(JavaOnlyMap.of("byType", false, "topNumbers", 10),
+                        JavaOnlyMap.of("types", CallLogTests.json("MISSED")));
+            }
+        });
+        // The first search builds the index during the warm-ups.
+        final String typed = contact.substring(contact.length() - 4);
+        benchmark.measure("search 4 digits", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                search(typed);
+            }
+        });
+        benchmark.measure("exportTo all, 4 fields, csv", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                export(CallLogExporter.CSV, JavaOnlyMap.of("fields", CallLogTests.json(FIELDS)));
+            }
+        });
+        benchmark.measure("exportTo missed, ndjson gzip", new CallLogBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                export(CallLogExporter.NDJSON, JavaOnlyMap.of("types", CallLogTests.json("MISSED")));
+            }
+        });
+    }
+
+    private void load(int limit, ReadableMap filter) {
+        Promise promise = CallLogTests.newPromise();
+        module.loadWithFilter(limit, filter, null, promise);
+        assertTrue(CallLogTests.await(promise) != null);
+    }
+
+    private void search(String query) {
+        Promise promise = CallLogTests.newPromise();
+        module.search(query, 10, null, promise);
+        assertTrue(CallLogTests.await(promise) != null);
+    }
+
+    private void export(String format, ReadableMap filter) {
+        Promise promise = CallLogTests.newPromise();
+        module.exportTo(EXPORT_PATH, format, filter, JavaOnlyMap.of("gzip", CallLogExporter.NDJSON.equals(format)), promise);
+        assertTrue(((ReadableMap) CallLogTests.await(promise)).getInt("rowCount") > 0);
+    }
+
+    private void aggregate(ReadableMap spec, ReadableMap filter) {
+        Promise promise = CallLogTests.newPromise();
+        module.aggregate(spec, filter, null, promise);
+        assertTrue(((ReadableMap) CallLogTests.await(promise)).hasKey("count"));
+    }
+
+    /**
+     * A maxTimestamp after every call: it selects the same rows, but as a new cache key.
+     */
+    private static String uncached(int iteration) {
+        return Long.toString(SyntheticCallLog.NOW + 1 + iteration);
+    }
+}
@@ -0,0 +1,172 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CallLogProjectionTest {
+
+    private static final int ROWS = 50000;
+    private static final int WARM_UP_ROWS = 2000;
+
+    @Test
+    public void decodesTheSameCallsAsTheLegacyLoop() {
+        ContentValues[] rows = SyntheticCallLog.generate(500, CallLogTests.SEED);
+
+        ReadableArray legacy = decodeLegacy(CallLogTests.cursorOf(rows));
+        ReadableArray current = decode(CallLogTests.cursorOf(rows), CallLogProjection.of(null));
+
+        assertEquals(legacy.size(), current.size());
+        for (int i = 0; i < legacy.size(); i++) {
+            ReadableMap expected = legacy.getMap(i);
+            ReadableMap actual = current.getMap(i);
+            for (String key : Arrays.asList(CallLogProjection.PHONE_NUMBER, CallLogProjection.DATE_TIME,
+                    CallLogProjection.NORMALIZED_TYPE, Calls.NUMBER, Calls.CACHED_NAME, Calls.COUNTRY_ISO)) {
+                assertEquals(key, expected.getString(key), actual.getString(key));
+            }
+            assertEquals(Long.parseLong(expected.getString(Calls.DATE)), (long) actual.getDouble(Calls.DATE));
+            assertEquals(Integer.parseInt(expected.getString(Calls.TYPE)), actual.getInt(Calls.TYPE));
+        }
+    }
+
+    @Test
+    public void groupsConsecutiveCallsWithTheSameKnownNumber() {
+        ContentValues[] rows = new ContentValues[5];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(Calls.TYPE, Calls.INCOMING_TYPE);
+            rows[i].put(Calls.DATE, SyntheticCallLog.NOW - i);
+            rows[i].put(Calls.DURATION, 10);
+        }
+        // Private and unknown callers have no digits and may be different people.
+        rows[0].put(Calls.NUMBER, "");
+        rows[1].put(Calls.NUMBER, "");
+        rows[2].put(Calls.NUMBER, SyntheticCallLog.number(7, 0));
+        rows[2].put(Calls.CACHED_NORMALIZED_NUMBER, SyntheticCallLog.number(7, 3));
+        rows[3].put(Calls.NUMBER, SyntheticCallLog.number(7, 1));
+        rows[3].put(Calls.CACHED_NORMALIZED_NUMBER, SyntheticCallLog.number(7, 3));
+        rows[4].put(Calls.NUMBER, SyntheticCallLog.number(7, 2));
+
+        Cursor cursor = CallLogTests.cursorOf(rows);
+        CallLogProjection projection = CallLogProjection.of(null);
+        projection.bind(cursor);
+        CallLogGroups groups = new CallLogGroups(projection);
+        groups.bind(cursor);
+        while (cursor.moveToNext()) {
+            groups.add(cursor);
+        }
+        ReadableArray result = (ReadableArray) groups.result();
+
+        assertEquals(3, result.size());
+        assertEquals(1, result.getMap(0).getInt("count"));
+        assertEquals(1, result.getMap(1).getInt("count"));
+        assertEquals(3, result.getMap(2).getInt("count"));
+        assertEquals(30, result.getMap(2).getDouble("duration"), 0);
+    }
+
+    @Test
+    public void allocatesLessPerRowThanTheLegacyLoop() {
+        ContentValues[] rows = SyntheticCallLog.generate(ROWS, CallLogTests.SEED);
+        ContentValues[] warmUpRows = Arrays.copyOf(rows, WARM_UP_ROWS);
+        CallLogProjection projected = CallLogProjection.of(new LinkedHashSet<>(Arrays.asList(
+                CallLogProjection.PHONE_NUMBER, CallLogProjection.DATE_TIME, CallLogProjection.NORMALIZED_TYPE,
+                Calls.DURATION)));
+
+        // Class loading and the first DateFormat are paid once, outside the measurements.
+        decodeLegacy(CallLogTests.cursorOf(warmUpRows));
+        decode(CallLogTests.cursorOf(warmUpRows), CallLogProjection.of(null));
+        decode(CallLogTests.cursorOf(warmUpRows), projected);
+
+        long legacy = allocatedWhileDecoding(rows, null);
+        long everyColumn = allocatedWhileDecoding(rows, CallLogProjection.of(null));
+        long projectedColumns = allocatedWhileDecoding(rows, projected);
+
+        System.out.println(String.format(Locale.US,
+                "Decoding %d rows: legacy %d B/row, every column %d B/row, 4 fields %d B/row",
+                ROWS, legacy / ROWS, everyColumn / ROWS, projectedColumns / ROWS));
+        assertTrue(everyColumn < legacy);
+        assertTrue(projectedColumns < everyColumn);
+    }
+
+    private static long allocatedWhileDecoding(ContentValues[] rows, CallLogProjection projection) {
+        MatrixCursor cursor = CallLogTests.cursorOf(rows);
+        long before = CallLogTests.allocatedBytes();
+        ReadableArray result = projection == null ? decodeLegacy(cursor) : decode(cursor, projection);
+        long allocated = CallLogTests.allocatedBytes() - before;
+        assertEquals(rows.length, result.size());
+        return allocated;
+    }
+
+    private static ReadableArray decode(Cursor cursor, CallLogProjection projection) {
+        CallLogRows sink = new CallLogRows(projection);
+        projection.bind(cursor);
+        while (cursor.moveToNext()) {
+            sink.add(cursor);
+        }
+        return sink.result();
+    }
+
+    /**
+     * The per-row decoding loadWithFilter used before projections: column lookups, a new
+     * DateFormat and every value read as a string for each row.
+     */
+    private static ReadableArray decodeLegacy(Cursor cursor) {
+        WritableArray result = Arguments.createArray();
+
+        final int NUMBER_COLUMN_INDEX = cursor.getColumnIndex(Calls.NUMBER);
+        final int TYPE_COLUMN_INDEX = cursor.getColumnIndex(Calls.TYPE);
+        final int DATE_COLUMN_INDEX = cursor.getColumnIndex(Calls.DATE);
+        final int DURATION_COLUMN_INDEX = cursor.getColumnIndex(Calls.DURATION);
+        final int NAME_COLUMN_INDEX = cursor.getColumnIndex(Calls.CACHED_NAME);
+
+        while (cursor.moveToNext()) {
+            String phoneNumber = cursor.getString(NUMBER_COLUMN_INDEX);
+            int duration = cursor.getInt(DURATION_COLUMN_INDEX);
+            String name = cursor.getString(NAME_COLUMN_INDEX);
+
+            String timestampStr = cursor.getString(DATE_COLUMN_INDEX);
+            DateFormat df = SimpleDateFormat.getDateTimeInstance(SimpleDateFormat.MEDIUM, SimpleDateFormat.MEDIUM);
+            String dateTime = df.format(new Date(Long.valueOf(timestampStr)));
+
+            String type = CallType.resolve(cursor.getInt(TYPE_COLUMN_INDEX));
+
+            WritableMap callLog = Arguments.createMap();
+            callLog.putString("phoneNumber", phoneNumber);
+            callLog.putString("dateTime", dateTime);
+            callLog.putString("normalizedType", type);
+
+            String[] columnNames = cursor.getColumnNames();
+            for (String columnName : columnNames) {
+                int columnIndex = cursor.getColumnIndex(columnName);
+                if (columnIndex != -1) {
+                    String value = cursor.getString(columnIndex);
+                    callLog.putString(columnName, value != null ? value : "");
+                }
+            }
+            result.pushMap(callLog);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CallLogQueryTest {
+
+    private static final int ROWS = 10000;
+    private static final long SINCE = SyntheticCallLog.NOW - 90L * 24 * 60 * 60 * 1000;
+
+    private ContentValues[] rows;
+    private FakeCallLogProvider provider;
+    private ContentResolver resolver;
+    private CallLogNumberIndex numberIndex;
+
+    @Before
+    public void setUp() {
+        rows = SyntheticCallLog.generate(ROWS, CallLogTests.SEED);
+        provider = CallLogTests.installProvider(0);
+        provider.addCalls(rows);
+        resolver = RuntimeEnvironment.application.getContentResolver();
+        numberIndex = new CallLogNumberIndex(resolver);
+    }
+
+    @Test
+    public void pushesTypesTimestampsAndLimitToTheProvider() throws Exception {
+        CallLogFilter filter = CallLogFilter.from(JavaOnlyMap.of(
+                "types", CallLogTests.json("MISSED", "REJECTED"),
+                "minTimestamp", Long.toString(SINCE)));
+        CallLogQuery query = CallLogQuery.plan(filter, CallLogProjection.of(null), 20, numberIndex);
+
+        assertEquals("date >= ? AND (type IN (?,?))", query.selection);
+        assertEquals(Long.toString(SINCE), query.selectionArgs[0]);
+        assertEquals(new HashSet<>(Arrays.asList("3", "5")),
+                new HashSet<>(Arrays.asList(query.selectionArgs[1], query.selectionArgs[2])));
+        assertEquals("20", query.uri.getQueryParameter(Calls.LIMIT_PARAM_KEY));
+
+        int count = 0;
+        Cursor cursor = query.execute(resolver, new CallLogRequest("test"));
+        try {
+            int type = cursor.getColumnIndex(Calls.TYPE);
+            int date = cursor.getColumnIndex(Calls.DATE);
+            while (cursor.moveToNext()) {
+                assertTrue(cursor.getInt(type) == Calls.MISSED_TYPE || cursor.getInt(type) == Calls.REJECTED_TYPE);
+                assertTrue(cursor.getLong(date) >= SINCE);
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals(Math.min(20, countMatching(SINCE, Calls.MISSED_TYPE, Calls.REJECTED_TYPE)), count);
+        assertEquals(query.selection, provider.lastSelection);
+        assertEquals(count, provider.rowsReturned.get());
+    }
+
+    @Test
+    public void selectsPhoneNumbersByIdInAnySpelling() throws Exception {
+        String digits = CallLogNumbers.digits(SyntheticCallLog.number(0, 3));
+        CallLogFilter filter = CallLogFilter.from(JavaOnlyMap.of(
+                "phoneNumbers", CallLogTests.json(SyntheticCallLog.number(0, 1))));
+        CallLogQuery query = CallLogQuery.plan(filter, CallLogProjection.of(null), -1, numberIndex);
+        provider.resetCounters();
+
+        assertTrue(query.selection.startsWith("_id IN ("));
+        assertNull(query.uri.getQueryParameter(Calls.LIMIT_PARAM_KEY));
+
+        int count = 0;
+        Cursor cursor = query.execute(resolver, new CallLogRequest("test"));
+        try {
+            query.bind(cursor);
+            int number = cursor.getColumnIndex(Calls.NUMBER);
+            while (cursor.moveToNext()) {
+                assertTrue(query.matches(cursor));
+                assertTrue(digits.endsWith(CallLogNumbers.digits(cursor.getString(number))));
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int expected = countNumber(digits);
+        assertTrue(expected > 0 && expected < ROWS / 4);
+        assertEquals(expected, count);
+        // Only the selected rows left the provider.
+        assertEquals(expected, provider.rowsReturned.get());
+    }
+
+    @Test
+    public void matchesVeryFrequentNumbersPerRowWithoutALimit() throws Exception {
+        ContentValues[] frequent = new ContentValues[CallLogQuery.MAX_INLINE_IDS + 1];
+        for (int i = 0; i < frequent.length; i++) {
+            frequent[i] = new ContentValues();
+            frequent[i].put(Calls.NUMBER, "555 999 0000");
+            frequent[i].put(Calls.TYPE, Calls.OUTGOING_TYPE);
+            frequent[i].put(Calls.DATE, SyntheticCallLog.NOW + i);
+        }
+        provider.addCalls(frequent);
+
+        CallLogFilter filter = CallLogFilter.from(JavaOnlyMap.of("phoneNumbers", CallLogTests.json("5559990000")));
+        CallLogQuery query = CallLogQuery.plan(filter, CallLogProjection.of(null), 10, numberIndex);
+
+        // Rows are dropped after the provider returns them, so it cannot apply the limit.
+        assertNull(query.selection);
+        assertNull(query.uri.getQueryParameter(Calls.LIMIT_PARAM_KEY));
+    }
+
+    @Test
+    public void findsRowsAddedChangedAndDeletedSinceTheIndexWasBuilt() throws Exception {
+        CallLogFilter filter = CallLogFilter.from(JavaOnlyMap.of("phoneNumbers", CallLogTests.json("555 123 4567")));
+        CallLogFilter previousFilter = CallLogFilter.from(JavaOnlyMap.of(
+                "phoneNumbers", CallLogTests.json(rows[0].getAsString(Calls.NUMBER))));
+        assertEquals(0, numberIndex.lookup(filter.phoneNumbers).length);
+        int previousCount = numberIndex.lookup(previousFilter.phoneNumbers).length;
+
+        ContentValues call = new ContentValues();
+        call.put(Calls.NUMBER, "555 123 4567");
+        call.put(Calls.TYPE, Calls.OUTGOING_TYPE);
+        call.put(Calls.DATE, SyntheticCallLog.NOW);
+        long id = ContentUris.parseId(resolver.insert(Calls.CONTENT_URI, call));
+        // Looked up before the change notification has been delivered.
+        assertEquals(id, numberIndex.lookup(filter.phoneNumbers)[0]);
+
+        ContentValues renumbered = new ContentValues();
+        renumbered.put(Calls.NUMBER, "555 765 4321");
+        renumbered.putNull(Calls.CACHED_NORMALIZED_NUMBER);
+        resolver.update(Calls.CONTENT_URI, renumbered, Calls._ID + " = ?", new String[] { "1" });
+        resolver.delete(Calls.CONTENT_URI, Calls._ID + " = ?", new String[] { Long.toString(id) });
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(0, numberIndex.lookup(filter.phoneNumbers).length);
+        CallLogFilter renumberedFilter = CallLogFilter.from(JavaOnlyMap.of("phoneNumbers", CallLogTests.json("5557654321")));
+        assertTrue(Arrays.equals(new long[] { 1 }, numberIndex.lookup(renumberedFilter.phoneNumbers)));
+        assertEquals(previousCount - 1, numberIndex.lookup(previousFilter.phoneNumbers).length);
+    }
+
+    @Test
+    public void countsRowsWithoutCopyingThemOut() {
+        provider.resetCounters();
+
+        assertTrue(CallLogQuery.hasAtLeast(resolver, ROWS));
+        assertFalse(CallLogQuery.hasAtLeast(resolver, ROWS + 1));
+        assertEquals(1, provider.rowsReturned.get());
+
+        resolver.delete(Calls.CONTENT_URI, Calls._ID + " = ?", new String[] { "1" });
+        assertFalse(CallLogQuery.hasAtLeast(resolver, ROWS));
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsUnknownFields() throws Exception {
+        CallLogFilter.from(JavaOnlyMap.of("fields", CallLogTests.json(CallLogProjection.PHONE_NUMBER, "number); --")));
+    }
+
+    @Test
+    public void loadWithFilterScansOnlyTheRowsItReturns() throws Exception {
+        CallLogModule module = CallLogTests.newModule();
+        module.setStatsEnabled(true);
+        provider.resetCounters();
+
+        Promise promise = CallLogTests.newPromise();
+        module.loadWithFilter(20, JavaOnlyMap.of(
+                "types", CallLogTests.json("MISSED"),
+                "minTimestamp", Long.toString(SINCE)), null, promise);
+        ReadableArray callLogs = (ReadableArray) CallLogTests.await(promise);
+
+        assertEquals(20, callLogs.size());
+        for (int i = 0; i < callLogs.size(); i++) {
+            assertEquals("MISSED", callLogs.getMap(i).getString(CallLogProjection.NORMALIZED_TYPE));
+        }
+        assertEquals(1, provider.queries.get());
+        assertEquals(20, provider.rowsReturned.get());
+
+        Promise stats = CallLogTests.newPromise();
+        module.getStats(stats);
+        ReadableMap trace = ((ReadableMap) CallLogTests.await(stats)).getArray("requests").getMap(0);
+        assertEquals(20, trace.getDouble("rowsScanned"), 0);
+        assertEquals(20, trace.getDouble("rowsReturned"), 0);
+    }
+
+    @Test
+    public void tracesSearchAndExport() throws Exception {
+        CallLogModule module = CallLogTests.newModule();
+        module.setStatsEnabled(true);
+
+        Promise search = CallLogTests.newPromise();
+        module.search(SyntheticCallLog.number(0, 2).substring(0, 6), 5, null, search);
+        CallLogTests.await(search);
+        Promise export = CallLogTests.newPromise();
+        module.exportTo("traced.csv", CallLogExporter.CSV, JavaOnlyMap.of("types", CallLogTests.json("MISSED")), null, export);
+        ReadableMap exported = (ReadableMap) CallLogTests.await(export);
+
+        Promise stats = CallLogTests.newPromise();
+        module.getStats(stats);
+        ReadableArray requests = ((ReadableMap) CallLogTests.await(stats)).getArray("requests");
+        assertEquals(2, requests.size());
+        assertEquals("search", requests.getMap(0).getString("method"));
+        assertEquals(ROWS, requests.getMap(0).getDouble("rowsScanned"), 0);
+        assertEquals(5, requests.getMap(0).getDouble("rowsReturned"), 0);
+        assertEquals("exportTo", requests.getMap(1).getString("method"));
+        assertEquals(exported.getInt("rowCount"), requests.getMap(1).getDouble("rowsReturned"), 0);
+    }
+
+    private int countMatching(long since, int... types) {
+        int count = 0;
+        for (ContentValues row : rows) {
+            if (row.getAsLong(Calls.DATE) < since) {
+                continue;
+            }
+            for (int type : types) {
+                if (row.getAsInteger(Calls.TYPE) == type) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int countNumber(String digits) {
+        int count = 0;
+        for (ContentValues row : rows) {
+            if (digits.endsWith(CallLogNumbers.digits(row.getAsString(Calls.NUMBER)))) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,154 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+import android.provider.CallLog;
+import android.provider.CallLog.Calls;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.json.JSONArray;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * Wiring shared by the tests that run the module against {@link FakeCallLogProvider}.
+ */
+final class CallLogTests {
+
+    static final long TIMEOUT_MILLIS = 60000;
+    static final long SEED = 42;
+
+    // The columns FakeCallLogProvider stores, in table order.
+    static final String[] COLUMNS = {
+            Calls._ID, Calls.NUMBER, Calls.CACHED_NORMALIZED_NUMBER, Calls.CACHED_NAME, Calls.TYPE, Calls.DATE,
+            Calls.DURATION, Calls.NEW, Calls.IS_READ, Calls.COUNTRY_ISO, Calls.LAST_MODIFIED };
+
+    private CallLogTests() {
+    }
+
+    static FakeCallLogProvider installProvider(int rows) {
+        FakeCallLogProvider provider = Robolectric.setupContentProvider(FakeCallLogProvider.class, CallLog.AUTHORITY);
+        provider.addCalls(SyntheticCallLog.generate(rows, SEED));
+        return provider;
+    }
+
+    /**
+     * The rows as a cursor with every provider column, numbered from _ID 1.
+     */
+    static MatrixCursor cursorOf(ContentValues[] rows) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            Object[] values = new Object[COLUMNS.length];
+            values[0] = i + 1;
+            for (int column = 1; column < COLUMNS.length; column++) {
+                values[column] = rows[i].get(COLUMNS[column]);
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+
+    /**
+     * Bytes allocated by the current thread so far; differences measure the garbage a piece
+     * of code produces.
+     */
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Bytes allocated so far by every live thread, including the executor's, which allocate
+     * most of a request's garbage.
+     */
+    static long allocatedBytesOfAllThreads() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // -1 for threads that ended in between.
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+
+    /**
+     * Heap in use once garbage is collected; differences approximate what a result retains.
+     */
+    static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static CallLogModule newModule() {
+        return new CallLogModule(new ReactApplicationContext(RuntimeEnvironment.application));
+    }
+
+    /**
+     * A mock promise that records how it was settled. Interactions can still be verified.
+     */
+    static Promise newPromise() {
+        return mock(Promise.class, new Settlement());
+    }
+
+    /**
+     * Waits for the promise to be resolved and returns the value; fails if it is rejected
+     * or not settled in time.
+     */
+    static Object await(Promise promise) {
+        Settlement settlement = (Settlement) mockingDetails(promise).getMockCreationSettings().getDefaultAnswer();
+        try {
+            if (!settlement.settled.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new AssertionError("The promise was not settled within " + TIMEOUT_MILLIS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+        if (!settlement.method.equals("resolve")) {
+            throw new AssertionError("The promise was rejected: " + Arrays.toString(settlement.arguments));
+        }
+        return settlement.arguments[0];
+    }
+
+    /**
+     * Counts down on the first call to resolve or any reject overload. Waiting on a latch
+     * keeps polling out of the benchmarks' latencies and allocations.
+     */
+    private static final class Settlement implements Answer<Object> {
+        final CountDownLatch settled = new CountDownLatch(1);
+        volatile String method;
+        volatile Object[] arguments;
+
+        @Override
+        public Object answer(InvocationOnMock invocation) {
+            if (settled.getCount() > 0) {
+                method = invocation.getMethod().getName();
+                arguments = invocation.getArguments();
+                settled.countDown();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The JSON array string the JS side sends for list-valued filter entries.
+     */
+    static String json(String... values) {
+        return new JSONArray(Arrays.asList(values)).toString();
+    }
+}
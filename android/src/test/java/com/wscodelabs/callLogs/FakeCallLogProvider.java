@@ -0,0 +1,221 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.provider.CallLog.Calls;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * A call log provider backed by an in-memory SQLite table with the columns the module
+ * reads. It honours {@link Calls#LIMIT_PARAM_KEY} and {@link Calls#OFFSET_PARAM_KEY} like
+ * the platform provider and records what it was asked for, so tests can check the
+ * pushed-down selection and how many rows left the provider.
+ */
+public class FakeCallLogProvider extends ContentProvider {
+
+    private static final String TABLE = "calls";
+
+    private SQLiteDatabase db;
+
+    final AtomicInteger queries = new AtomicInteger();
+    final AtomicLong rowsReturned = new AtomicLong();
+    final AtomicLong rowsRead = new AtomicLong();
+    @Nullable volatile Uri lastUri;
+    @Nullable volatile String[] lastProjection;
+    @Nullable volatile String lastSelection;
+    @Nullable volatile String[] lastSelectionArgs;
+    @Nullable volatile String lastSortOrder;
+
+    @Nullable private volatile CountDownLatch gate;
+    @Nullable private volatile CountDownLatch entered;
+    @Nullable private volatile CountDownLatch closed;
+    private volatile int heldRow = -1;
+
+    @Override
+    public boolean onCreate() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + Calls._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + Calls.NUMBER + " TEXT, "
+                + Calls.CACHED_NORMALIZED_NUMBER + " TEXT, "
+                + Calls.CACHED_NAME + " TEXT, "
+                + Calls.TYPE + " INTEGER, "
+                + Calls.DATE + " INTEGER, "
+                + Calls.DURATION + " INTEGER, "
+                + Calls.NEW + " INTEGER, "
+                + Calls.IS_READ + " INTEGER, "
+                + Calls.COUNTRY_ISO + " TEXT, "
+                + Calls.LAST_MODIFIED + " INTEGER)");
+        db.execSQL("CREATE INDEX calls_date ON " + TABLE + " (" + Calls.DATE + ")");
+        return true;
+    }
+
+    /**
+     * Inserts the rows in one transaction without notifying observers.
+     */
+    void addCalls(ContentValues[] rows) {
+        db.beginTransaction();
+        try {
+            for (ContentValues row : rows) {
+                db.insertOrThrow(TABLE, null, row);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    void resetCounters() {
+        queries.set(0);
+        rowsReturned.set(0);
+        rowsRead.set(0);
+    }
+
+    /**
+     * Holds queries inside the provider until {@link #release()}, so tests can issue
+     * requests while one is known to be in flight.
+     */
+    void hold() {
+        holdAt(-1);
+    }
+
+    /**
+     * Like {@link #hold()}, but lets the query through and holds the returned cursor when
+     * it is about to move to the given row instead, so tests can act in the middle of a scan.
+     */
+    void holdAt(int row) {
+        heldRow = row;
+        closed = new CountDownLatch(1);
+        entered = new CountDownLatch(1);
+        gate = new CountDownLatch(1);
+    }
+
+    boolean awaitQuery(long timeoutMillis) throws InterruptedException {
+        return entered.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits until the cursor of the held query has been closed.
+     */
+    boolean awaitClose(long timeoutMillis) throws InterruptedException {
+        return closed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void release() {
+        gate.countDown();
+        gate = null;
+    }
+
+    @Override
+    public Cursor query(Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        lastUri = uri;
+        lastProjection = projection;
+        lastSelection = selection;
+        lastSelectionArgs = selectionArgs;
+        lastSortOrder = sortOrder;
+        queries.incrementAndGet();
+
+        CountDownLatch held = gate;
+        if (held != null && heldRow < 0) {
+            block(held);
+        }
+
+        String limit = uri.getQueryParameter(Calls.LIMIT_PARAM_KEY);
+        String offset = uri.getQueryParameter(Calls.OFFSET_PARAM_KEY);
+        Cursor cursor = db.query(TABLE, projection, selection, selectionArgs, null, null, sortOrder,
+                offset != null && limit != null ? offset + "," + limit : limit);
+        rowsReturned.addAndGet(cursor.getCount());
+        return new CountingCursor(cursor, held);
+    }
+
+    private void block(CountDownLatch held) {
+        entered.countDown();
+        try {
+            held.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Counts the rows the caller actually moved to and holds at {@link #heldRow}.
+     */
+    private final class CountingCursor extends CursorWrapper {
+
+        @Nullable private final CountDownLatch held;
+
+        CountingCursor(Cursor cursor, @Nullable CountDownLatch held) {
+            super(cursor);
+            this.held = held;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            if (held != null && getPosition() + 1 == heldRow) {
+                block(held);
+            }
+            boolean moved = super.moveToNext();
+            if (moved) {
+                rowsRead.incrementAndGet();
+            }
+            return moved;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (held != null) {
+                closed.countDown();
+            }
+        }
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        long id = db.insertOrThrow(TABLE, null, modified(values));
+        getContext().getContentResolver().notifyChange(uri, null);
+        return Uri.withAppendedPath(uri, Long.toString(id));
+    }
+
+    @Override
+    public int delete(Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        int deleted = db.delete(TABLE, selection, selectionArgs);
+        getContext().getContentResolver().notifyChange(uri, null);
+        return deleted;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, @Nullable String selection, @Nullable String[] selectionArgs) {
+        int updated = db.update(TABLE, modified(values), selection, selectionArgs);
+        getContext().getContentResolver().notifyChange(uri, null);
+        return updated;
+    }
+
+    /**
+     * Stamps LAST_MODIFIED on a write as the platform provider does, unless the caller set it.
+     */
+    private static ContentValues modified(ContentValues values) {
+        if (values.containsKey(Calls.LAST_MODIFIED)) {
+            return values;
+        }
+        ContentValues stamped = new ContentValues(values);
+        stamped.put(Calls.LAST_MODIFIED, System.currentTimeMillis());
+        return stamped;
+    }
+}
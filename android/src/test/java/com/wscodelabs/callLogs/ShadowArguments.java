@@ -0,0 +1,28 @@
+package com.wscodelabs.callLogs;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Backs {@link Arguments} with the bridge's Java-only collections, which need no native
+ * library. Unlike a static mock this applies on the executor threads too.
+ */
+@Implements(Arguments.class)
+public class ShadowArguments {
+
+    @Implementation
+    protected static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    @Implementation
+    protected static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+}
@@ -0,0 +1,94 @@
+package com.wscodelabs.callLogs;
+
+import android.content.ContentValues;
+import android.provider.CallLog.Calls;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates a reproducible call log shaped like a real one: a few numbers account for
+ * most calls, the same number is spelled several ways, most calls are incoming or
+ * outgoing, and calls are spread over the years before {@link #NOW}.
+ */
+final class SyntheticCallLog {
+
+    static final long NOW = 1700000000000L;
+
+    private static final long MAX_GAP_MILLIS = 2 * 60 * 60 * 1000L;
+
+    private SyntheticCallLog() {
+    }
+
+    /**
+     * Rows in insertion order, newest first, so _ID ascends as DATE descends.
+     */
+    static ContentValues[] generate(int count, long seed) {
+        Random random = new Random(seed);
+        int contacts = Math.max(10, Math.min(2000, count / 25));
+
+        ContentValues[] rows = new ContentValues[count];
+        long date = NOW;
+        for (int i = 0; i < count; i++) {
+            // Squaring skews the choice towards the first contacts.
+            double r = random.nextDouble();
+            int contact = (int) (contacts * r * r);
+            int type = type(random);
+
+            ContentValues row = new ContentValues();
+            row.put(Calls.NUMBER, number(contact, random.nextInt(3)));
+            if (random.nextInt(10) < 7) {
+                row.put(Calls.CACHED_NORMALIZED_NUMBER, number(contact, 3));
+            }
+            if (contact % 5 < 3) {
+                row.put(Calls.CACHED_NAME, "Contact " + contact);
+            }
+            row.put(Calls.TYPE, type);
+            row.put(Calls.DATE, date);
+            row.put(Calls.DURATION, type == Calls.INCOMING_TYPE || type == Calls.OUTGOING_TYPE
+                    ? random.nextInt(600) : 0);
+            row.put(Calls.NEW, type == Calls.MISSED_TYPE ? 1 : 0);
+            row.put(Calls.IS_READ, 1);
+            row.put(Calls.COUNTRY_ISO, "US");
+            row.put(Calls.LAST_MODIFIED, date);
+            rows[i] = row;
+
+            date -= (long) (random.nextDouble() * MAX_GAP_MILLIS);
+        }
+        return rows;
+    }
+
+    /**
+     * The number of the given contact in one of its spellings: 0-2 are formatted as
+     * users and carriers write them, 3 is E.164 as stored in the normalized column.
+     */
+    static String number(int contact, int spelling) {
+        String subscriber = String.format(Locale.US, "%07d", 2000000 + contact * 37);
+        String exchange = subscriber.substring(0, 3);
+        String line = subscriber.substring(3);
+        switch (spelling) {
+            case 0:
+                return "+1 555-" + exchange + "-" + line;
+            case 1:
+                return "(555) " + exchange + "-" + line;
+            case 2:
+                return "555" + subscriber;
+            default:
+                return "+1555" + subscriber;
+        }
+    }
+
+    private static int type(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 45) {
+            return Calls.INCOMING_TYPE;
+        }
+        if (roll < 80) {
+            return Calls.OUTGOING_TYPE;
+        }
+        if (roll < 95) {
+            return Calls.MISSED_TYPE;
+        }
+        return roll < 98 ? Calls.REJECTED_TYPE : Calls.BLOCKED_TYPE;
+    }
+}
@@ -1,34 +1,243 @@
-import { NativeModules } from 'react-native';
+import { DeviceEventEmitter, NativeModules } from 'react-native';
 
 const {CallLogs: NativeCallLogs} = NativeModules;
 
+let nextStreamId = 0;
+let activeSubscription = null;
+
+function toNativeFilter(filter) {
+  const {minTimestamp, maxTimestamp, types, phoneNumbers, fields, format, groupBy, enrichContacts} = filter;
+  const phoneNumbersArray = Array.isArray(phoneNumbers) ? 
+    phoneNumbers : 
+    typeof phoneNumbers === 'string' ? [phoneNumbers] : [];
+
+  const typesArray = Array.isArray(types) ? 
+    types.map(x => x.toString()) : 
+    (typeof types === 'string' || typeof types === 'object') ? [types.toString()] : [];
+
+  return {
+    minTimestamp: minTimestamp ? minTimestamp.toString() : undefined,
+    maxTimestamp: maxTimestamp ? maxTimestamp.toString() : undefined,
+    types: JSON.stringify(typesArray),
+    phoneNumbers: JSON.stringify(phoneNumbersArray),
+    fields: Array.isArray(fields) ? JSON.stringify(fields) : undefined,
+    format,
+    groupBy,
+    enrichContacts: !!enrichContacts,
+  };
+}
+
+// Wraps a columnar result so it can be read row by row without copying it into row objects.
+function columnar(result) {
+  const {length, columns, dictionaries} = result;
+  const keys = Object.keys(columns);
+
+  const value = (key, index) => {
+    const column = columns[key];
+    if (!column) {
+      return undefined;
+    }
+    const dictionary = dictionaries[key];
+    const raw = column[index];
+    return dictionary && raw !== null ? dictionary[raw] : raw;
+  };
+
+  const get = index => {
+    const row = {};
+    keys.forEach(key => {
+      row[key] = value(key, index);
+    });
+    return row;
+  };
+
+  return {
+    length,
+    columns,
+    dictionaries,
+    value,
+    get,
+    toArray: () => Array.from({length}, (_, index) => get(index)),
+  };
+}
+
+function isColumnar(result) {
+  return result && result.format === 'columnar';
+}
+
 class CallLogs {
-  static async load(limit, filter) {
-    if (!filter) {
+  // requestId is optional; pass it to cancel() to abandon the request.
+  static async load(limit, filter, requestId) {
+    if (!filter && !requestId) {
       return NativeCallLogs.load(limit);
     }
-    const {minTimestamp, maxTimestamp, types, phoneNumbers} = filter;
-    const phoneNumbersArray = Array.isArray(phoneNumbers) ? 
-      phoneNumbers : 
-      typeof phoneNumbers === 'string' ? [phoneNumbers] : [];
+    const result = await NativeCallLogs.loadWithFilter(
+      limit,
+      filter ? toNativeFilter(filter) : null,
+      requestId || null
+    );
+    return isColumnar(result) ? columnar(result) : result;
+  }
 
-    const typesArray = Array.isArray(types) ? 
-      types.map(x => x.toString()) : 
-      (typeof types === 'string' || typeof types === 'object') ? [types.toString()] : [];
+  // queries: [{limit, filter}, ...]; resolves one result per query, in order, from a single scan.
+  static async loadBatch(queries, requestId) {
+    const results = await NativeCallLogs.loadBatch(
+      queries.map(({limit, filter}) => ({
+        limit: limit == null ? -1 : limit,
+        filter: filter ? toNativeFilter(filter) : null,
+      })),
+      requestId || null
+    );
+    return results.map(result => isColumnar(result) ? columnar(result) : result);
+  }
 
-    return NativeCallLogs.loadWithFilter(
-      limit,
-      {
-        minTimestamp: minTimestamp ? minTimestamp.toString() : undefined,
-        maxTimestamp: maxTimestamp ? maxTimestamp.toString() : undefined,
-        types: JSON.stringify(typesArray),
-        phoneNumbers: JSON.stringify(phoneNumbersArray),
-      }
+  static async loadAll(requestId) {
+    if (!requestId) {
+      return NativeCallLogs.loadAll();
+    }
+    return NativeCallLogs.loadWithFilter(-1, null, requestId);
+  }
+
+  static async loadPage(pageSize, afterToken, filter, requestId) {
+    const page = await NativeCallLogs.loadPage(
+      pageSize,
+      afterToken || null,
+      filter ? toNativeFilter(filter) : null,
+      requestId || null
+    );
+    return isColumnar(page.items) ? {...page, items: columnar(page.items)} : page;
+  }
+
+  // spec: {byType, byNumber, topNumbers, histogram: 'hour' | 'day'}
+  static async aggregate(spec, filter, requestId) {
+    return NativeCallLogs.aggregate(
+      spec || null,
+      filter ? toNativeFilter(filter) : null,
+      requestId || null
     );
   }
 
-  static async loadAll() {
-    return NativeCallLogs.loadAll();
+  // format: 'ndjson' or 'csv'; options: {gzip, resumeFrom, requestId}
+  static async exportTo(path, format, filter, options) {
+    return NativeCallLogs.exportTo(
+      path,
+      format,
+      filter ? toNativeFilter(filter) : null,
+      options || null
+    );
+  }
+
+  // Matches numbers and cached names; resolves [{phoneNumber, name, lastTimestamp, callCount}].
+  static async search(query, limit, requestId) {
+    return NativeCallLogs.search(query, limit == null ? 10 : limit, requestId || null);
+  }
+
+  // Per-request timings are only recorded while enabled; disabling drops them.
+  static setStatsEnabled(enabled) {
+    NativeCallLogs.setStatsEnabled(!!enabled);
+  }
+
+  static async getStats() {
+    return NativeCallLogs.getStats();
+  }
+
+  static async getCacheStats() {
+    return NativeCallLogs.getCacheStats();
+  }
+
+  static cancel(requestId) {
+    NativeCallLogs.cancel(requestId);
+  }
+
+  // Calls onChange({inserted, updated, deleted, watermark}) whenever the call log changes.
+  // Pass a watermark from an earlier change to also receive what changed since then.
+  // Only inserted and updated rows matching filter are reported; deleted ids are only
+  // reported with trackDeletions, and then whether or not the deleted row matched filter.
+  // There is one native feed, so subscribing again replaces the previous subscription.
+  static async subscribe({watermark, filter, fields, trackDeletions, onChange, onError}) {
+    if (activeSubscription) {
+      activeSubscription.removeListeners();
+    }
+
+    const listeners = [
+      DeviceEventEmitter.addListener('CallLogChanges', onChange),
+    ];
+    if (onError) {
+      listeners.push(
+        DeviceEventEmitter.addListener('CallLogChangesError', event => onError(new Error(event.message)))
+      );
+    }
+    const subscription = {
+      removeListeners: () => listeners.splice(0).forEach(listener => listener.remove()),
+    };
+    activeSubscription = subscription;
+
+    // A replaced subscription only removes its own listeners; the feed belongs to the newer one.
+    const unsubscribe = () => {
+      subscription.removeListeners();
+      if (activeSubscription === subscription) {
+        activeSubscription = null;
+        NativeCallLogs.unsubscribe();
+      }
+    };
+
+    const nativeFilter = filter || fields ? toNativeFilter({...filter, fields: fields || (filter && filter.fields)}) : null;
+    try {
+      await NativeCallLogs.subscribe(watermark || null, nativeFilter, {trackDeletions: !!trackDeletions});
+    } catch (e) {
+      unsubscribe();
+      throw e;
+    }
+
+    return {unsubscribe};
+  }
+
+  // Delivers call logs to onBatch as the native cursor advances. The next batch is only
+  // read once the promise returned by onBatch settles.
+  static stream({limit = -1, batchSize = 100, filter, onBatch}) {
+    const streamId = `${++nextStreamId}`;
+    let subscriptions = [];
+    let pending = Promise.resolve();
+
+    const unsubscribe = () => subscriptions.forEach(subscription => subscription.remove());
+
+    const done = new Promise((resolve, reject) => {
+      subscriptions = [
+        DeviceEventEmitter.addListener('CallLogStreamBatch', event => {
+          if (event.streamId !== streamId) {
+            return;
+          }
+          pending = pending
+            .then(() => onBatch(event.items))
+            .then(() => NativeCallLogs.ackStreamBatch(streamId))
+            .catch(e => {
+              NativeCallLogs.cancelStream(streamId);
+              unsubscribe();
+              reject(e);
+            });
+        }),
+        DeviceEventEmitter.addListener('CallLogStreamEnd', event => {
+          if (event.streamId !== streamId) {
+            return;
+          }
+          unsubscribe();
+          pending.then(() => resolve({count: event.count, cancelled: event.cancelled}));
+        }),
+        DeviceEventEmitter.addListener('CallLogStreamError', event => {
+          if (event.streamId !== streamId) {
+            return;
+          }
+          unsubscribe();
+          reject(new Error(event.message));
+        }),
+      ];
+    });
+
+    NativeCallLogs.startStream(streamId, limit, batchSize, filter ? toNativeFilter(filter) : null);
+
+    return {
+      done,
+      cancel: () => NativeCallLogs.cancelStream(streamId),
+    };
   }
 }
 
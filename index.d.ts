@@ -15,21 +15,202 @@ declare namespace CallLogs {
     maxTimestamp?: number;
     types?: CallType | CallType[];
     phoneNumbers?: string | string[];
+    fields?: string[];
+    format?: 'rows' | 'columnar';
+    groupBy?: 'consecutiveNumber';
+    enrichContacts?: boolean;
+  }
+
+  export interface CallLogGroup {
+    call: CallLog;
+    count: number;
+    types: { [type in CallType]?: number };
+    duration: number;
+    firstTimestamp: number;
+    lastTimestamp: number;
+  }
+
+  export interface ColumnarCallLogs {
+    length: number;
+    columns: { [key: string]: any[] };
+    dictionaries: { [key: string]: string[] };
+    value: (key: string, index: number) => any;
+    get: (index: number) => Partial<CallLog>;
+    toArray: () => Partial<CallLog>[];
   }
 
   export interface CallLog {
     phoneNumber: string;
     duration: number;
     name: string;
-    timestamp: string;
+    timestamp: number;
     dateTime: string;
     type: CallType;
     rawType: number;
+    displayName?: string | null;
+    photoUri?: string | null;
+    contactId?: number | null;
+  }
+
+  export interface CallLogPage {
+    items: CallLog[] | ColumnarCallLogs;
+    nextToken: string | null;
+  }
+
+  export interface CallLogStreamOptions {
+    limit?: number;
+    batchSize?: number;
+    filter?: CallFilter;
+    onBatch: (items: CallLog[]) => void | Promise<void>;
+  }
+
+  export interface CallLogStreamResult {
+    count: number;
+    cancelled: boolean;
+  }
+
+  export interface CallLogStream {
+    done: Promise<CallLogStreamResult>;
+    cancel: () => void;
+  }
+
+  export interface CallLogChanges {
+    inserted: CallLog[];
+    updated: CallLog[];
+    deleted: number[];
+    watermark: string;
+  }
+
+  export interface CallLogSubscribeOptions {
+    watermark?: string;
+    filter?: CallFilter;
+    fields?: string[];
+    trackDeletions?: boolean;
+    onChange: (changes: CallLogChanges) => void;
+    onError?: (error: Error) => void;
+  }
+
+  export interface CallLogSubscription {
+    unsubscribe: () => void;
+  }
+
+  export interface AggregateSpec {
+    byType?: boolean;
+    byNumber?: boolean;
+    topNumbers?: number;
+    histogram?: 'hour' | 'day';
+  }
+
+  export interface CallTotals {
+    count: number;
+    duration: number;
+  }
+
+  export interface NumberTotals extends CallTotals {
+    phoneNumber: string;
+  }
+
+  export interface HistogramBucket extends CallTotals {
+    start: number;
   }
 
-  const load: (limit: number, filter?: CallFilter) => Promise<CallLog[]>;
+  export interface CallStats extends CallTotals {
+    byType?: { [type in CallType]?: CallTotals };
+    byNumber?: NumberTotals[];
+    histogram?: HistogramBucket[];
+  }
+
+  export interface ExportOptions {
+    gzip?: boolean;
+    resumeFrom?: string;
+    requestId?: string;
+  }
+
+  export interface ExportResult {
+    path: string;
+    rowCount: number;
+    byteCount: number;
+    checkpoint: string | null;
+  }
+
+  export interface SearchResult {
+    phoneNumber: string;
+    name: string;
+    lastTimestamp: number;
+    callCount: number;
+  }
+
+  export interface RequestStats {
+    method: 'load' | 'loadPage' | 'loadBatch' | 'aggregate' | 'exportTo' | 'search' | 'stream' | 'subscribe';
+    key: string;
+    startedAt: number;
+    cached: boolean;
+    totalMillis: number;
+    queryMillis: number;
+    traversalMillis: number;
+    marshallingMillis: number;
+    rowsScanned: number;
+    rowsReturned: number;
+  }
+
+  export interface Stats {
+    enabled: boolean;
+    requests: RequestStats[];
+  }
+
+  export interface CacheStats {
+    hits: number;
+    misses: number;
+    evictions: number;
+    invalidations: number;
+    entries: number;
+    bytes: number;
+    maxBytes: number;
+  }
+
+  const load: (limit: number, filter?: CallFilter, requestId?: string) => Promise<CallLog[] | ColumnarCallLogs | CallLogGroup[]>;
+
+  export interface BatchQuery {
+    limit?: number;
+    filter?: CallFilter;
+  }
+
+  const loadBatch: (
+    queries: BatchQuery[],
+    requestId?: string,
+  ) => Promise<(CallLog[] | ColumnarCallLogs | CallLogGroup[])[]>;
+
+  const loadAll: (requestId?: string) => Promise<CallLog[]>;
+
+  const loadPage: (
+    pageSize: number,
+    afterToken?: string | null,
+    filter?: CallFilter,
+    requestId?: string,
+  ) => Promise<CallLogPage>;
+
+  const aggregate: (spec?: AggregateSpec, filter?: CallFilter, requestId?: string) => Promise<CallStats>;
+
+  const exportTo: (
+    path: string,
+    format: 'ndjson' | 'csv',
+    filter?: CallFilter,
+    options?: ExportOptions,
+  ) => Promise<ExportResult>;
+
+  const search: (query: string, limit?: number, requestId?: string) => Promise<SearchResult[]>;
+
+  const setStatsEnabled: (enabled: boolean) => void;
+
+  const getStats: () => Promise<Stats>;
+
+  const getCacheStats: () => Promise<CacheStats>;
+
+  const cancel: (requestId: string) => void;
+
+  const subscribe: (options: CallLogSubscribeOptions) => Promise<CallLogSubscription>;
 
-  const loadAll: () => Promise<CallLog[]>;
+  const stream: (options: CallLogStreamOptions) => CallLogStream;
 }
 
 export = CallLogs;